@@ -0,0 +1,76 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of enigma.Main parsing its configuration file (readConfig)
+ *  and settings lines (setUp), on generated files.
+ *  @author Aarini
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConfigBenchmark {
+
+    /** Number of characters in the alphabet. */
+    @Param({"26", "256"})
+    public int size;
+
+    /** Number of rotor slots (all but two hold moving rotors). */
+    @Param({"5", "8"})
+    public int rotors;
+
+    /** Number of settings lines in the settings-only input file. */
+    static final int SETTINGS_COUNT = 10000;
+
+    /** Write the configuration and settings files. */
+    @Setup
+    public void setUp() throws IOException {
+        _config = Configs.tempFile(Configs.config(size, rotors)).getPath();
+        StringBuilder settings = new StringBuilder();
+        Random random = new Random(Configs.SEED);
+        for (int i = 0; i < SETTINGS_COUNT; i += 1) {
+            settings.append(Configs.settings(size, rotors, random));
+            settings.append('\n');
+        }
+        _settingsOnly = Configs.tempFile(settings.toString()).getPath();
+        _oneSettings = Configs.tempFile(
+            Configs.settings(size, rotors, random)).getPath();
+        File output = File.createTempFile("enigma", ".out");
+        output.deleteOnExit();
+        _output = output.getPath();
+    }
+
+    /** Read the configuration and handle a single settings line. */
+    @Benchmark
+    public void readConfig() {
+        Main.main(_config, _oneSettings, _output);
+    }
+
+    /** Handle SETTINGS_COUNT settings lines. */
+    @Benchmark
+    public void setUpLines() {
+        Main.main(_config, _settingsOnly, _output);
+    }
+
+    /** Names of the generated files. */
+    private String _config, _settingsOnly, _oneSettings, _output;
+
+}
@@ -0,0 +1,178 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/** Randomly generated alphabets, rotors and input files for the
+ *  benchmarks.  Everything is derived from a fixed seed, so each run
+ *  measures the same machines and messages.
+ *  @author Aarini
+ */
+class Configs {
+
+    /** Seed for all generated data. */
+    static final long SEED = 61;
+
+    /** Number of distinct settings lines in a generated input file. */
+    static final int SETTINGS_LINES = 4;
+
+    /** Number of message characters on each generated input line. */
+    static final int LINE_LENGTH = 60;
+
+    /** Number of extra moving rotors beyond those a machine needs, so
+     *  that settings lines can choose among them. */
+    static final int SPARE_ROTORS = 3;
+
+    /** Return an alphabet of SIZE distinct characters, none of them
+     *  blanks or the characters "*,()": the upper-case letters first,
+     *  then characters from the Latin Extended-A block onward. */
+    static String alphabet(int size) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < size; i += 1) {
+            result.append(i < 26 ? (char) ('A' + i) : (char) (0x100 + i));
+        }
+        return result.toString();
+    }
+
+    /** Return a random permutation of ALPHA in cycle notation, drawn
+     *  using RANDOM.  If REFLECTOR, the result is a derangement made of
+     *  2-cycles (and ALPHA must have even length). */
+    static String cycles(String alpha, boolean reflector, Random random) {
+        List<Character> chars = new ArrayList<>();
+        for (char c : alpha.toCharArray()) {
+            chars.add(c);
+        }
+        Collections.shuffle(chars, random);
+        StringBuilder result = new StringBuilder();
+        int i = 0;
+        while (i < chars.size()) {
+            int len = reflector ? 2 : 1 + random.nextInt(alpha.length());
+            len = Math.min(len, chars.size() - i);
+            result.append(result.length() == 0 ? "(" : " (");
+            for (int k = 0; k < len; k += 1) {
+                result.append(chars.get(i + k));
+            }
+            result.append(")");
+            i += len;
+        }
+        return result.toString();
+    }
+
+    /** Return the text of a configuration file for a machine with an
+     *  alphabet of SIZE characters and NUMROTORS slots, all but two of
+     *  which hold moving rotors.  It defines reflector "B", fixed rotor
+     *  "F" and moving rotors "R1", "R2", ..., each with one notch. */
+    static String config(int size, int numRotors) {
+        Random random = new Random(SEED);
+        String alpha = alphabet(size);
+        StringBuilder result = new StringBuilder();
+        result.append(alpha).append('\n');
+        result.append(numRotors).append(' ').append(numRotors - 2);
+        result.append('\n');
+        result.append("B R ").append(cycles(alpha, true, random));
+        result.append('\n');
+        result.append("F N ").append(cycles(alpha, false, random));
+        result.append('\n');
+        for (int i = 1; i <= numRotors - 2 + SPARE_ROTORS; i += 1) {
+            result.append('R').append(i).append(" M");
+            result.append(alpha.charAt(random.nextInt(size))).append(' ');
+            result.append(cycles(alpha, false, random)).append('\n');
+        }
+        return result.toString();
+    }
+
+    /** Return a machine configured as by config(SIZE, NUMROTORS), set up
+     *  as by the first settings line of input(SIZE, NUMROTORS, ...). */
+    static Machine machine(int size, int numRotors) {
+        Random random = new Random(SEED);
+        Alphabet alpha = new CharacterRange(alphabet(size));
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(
+                cycles(alphabet(size), true, random), alpha)));
+        rotors.add(new FixedRotor("F", new Permutation(
+                cycles(alphabet(size), false, random), alpha)));
+        for (int i = 1; i <= numRotors - 2 + SPARE_ROTORS; i += 1) {
+            String notch = String.valueOf(alpha.toChar(random.nextInt(size)));
+            rotors.add(new MovingRotor("R" + i, new Permutation(
+                    cycles(alphabet(size), false, random), alpha), notch));
+        }
+        Machine result = new Machine(alpha, numRotors, numRotors - 2,
+                                     rotors);
+        String settings = settings(size, numRotors, new Random(SEED));
+        String[] words = settings.split(" ");
+        String[] names = new String[numRotors];
+        System.arraycopy(words, 1, names, 0, numRotors);
+        result.insertRotors(names);
+        result.setRotors(words[numRotors + 1]);
+        result.setRingSetting(words[numRotors + 2]);
+        result.setPlugboard(new Permutation(words[numRotors + 3], alpha));
+        return result;
+    }
+
+    /** Return a random settings line, with ring settings and one plugboard
+     *  pair, for a machine configured as by config(SIZE, NUMROTORS). */
+    static String settings(int size, int numRotors, Random random) {
+        String alpha = alphabet(size);
+        List<String> moving = new ArrayList<>();
+        for (int i = 1; i <= numRotors - 2 + SPARE_ROTORS; i += 1) {
+            moving.add("R" + i);
+        }
+        Collections.shuffle(moving, random);
+        StringBuilder result = new StringBuilder("* B F");
+        for (int i = 0; i < numRotors - 2; i += 1) {
+            result.append(' ').append(moving.get(i));
+        }
+        for (int k = 0; k < 2; k += 1) {
+            result.append(' ');
+            for (int i = 1; i < numRotors; i += 1) {
+                result.append(alpha.charAt(random.nextInt(size)));
+            }
+        }
+        result.append(" (").append(alpha.charAt(0))
+            .append(alpha.charAt(size - 1)).append(')');
+        return result.toString();
+    }
+
+    /** Return a random message of LENGTH characters from the alphabet of
+     *  SIZE characters, drawn using RANDOM. */
+    static String message(int size, int length, Random random) {
+        String alpha = alphabet(size);
+        char[] result = new char[length];
+        for (int i = 0; i < length; i += 1) {
+            result[i] = alpha.charAt(random.nextInt(size));
+        }
+        return new String(result);
+    }
+
+    /** Return the text of an input file for config(SIZE, NUMROTORS)
+     *  holding about LENGTH message characters, divided evenly among
+     *  SETTINGS_LINES settings lines, in lines of LINE_LENGTH. */
+    static String input(int size, int numRotors, int length) {
+        Random random = new Random(SEED);
+        StringBuilder result = new StringBuilder();
+        for (int s = 0; s < SETTINGS_LINES; s += 1) {
+            result.append(settings(size, numRotors, random)).append('\n');
+            for (int n = 0; n < length / SETTINGS_LINES; n += LINE_LENGTH) {
+                result.append(message(size, LINE_LENGTH, random));
+                result.append('\n');
+            }
+        }
+        return result.toString();
+    }
+
+    /** Return a temporary file, deleted on exit, containing TEXT. */
+    static File tempFile(String text) throws IOException {
+        File result = File.createTempFile("enigma", ".txt");
+        result.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(result)) {
+            out.print(text);
+        }
+        return result;
+    }
+
+}
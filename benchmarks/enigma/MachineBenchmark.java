@@ -0,0 +1,95 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks for Machine.convert, one character at a time and on whole
+ *  messages, with either conversion engine.
+ *  @author Aarini
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MachineBenchmark {
+
+    /** Number of characters in the alphabet. */
+    @Param({"26", "256"})
+    public int size;
+
+    /** Number of rotor slots (all but two hold moving rotors). */
+    @Param({"5", "8"})
+    public int rotors;
+
+    /** Number of characters in each message. */
+    @Param({"100", "10000"})
+    public int length;
+
+    /** True to convert with the compiled engine. */
+    @Param({"true", "false"})
+    public boolean compiled;
+
+    /** Build the machine and a random message for it. */
+    @Setup
+    public void setUp() {
+        _machine = Configs.machine(size, rotors);
+        _machine.setCompiled(compiled);
+        _message = Configs.message(size, length, new Random(Configs.SEED));
+        _chars = _message.toCharArray();
+        _indices = new int[length];
+        Alphabet alpha = new CharacterRange(Configs.alphabet(size));
+        for (int i = 0; i < length; i += 1) {
+            _indices[i] = alpha.toInt(_chars[i]);
+        }
+    }
+
+    /** Convert the message one index at a time with convert(int). */
+    @Benchmark
+    public int convertInt() {
+        int sum = 0;
+        for (int c : _indices) {
+            sum += _machine.convert(c);
+        }
+        return sum;
+    }
+
+    /** Convert the message with convert(String). */
+    @Benchmark
+    public String convertString() {
+        return _machine.convert(_message);
+    }
+
+    /** Convert the message in place with the bulk char[] API. */
+    @Benchmark
+    public char[] convertChars() {
+        _machine.convert(_chars, 0, _chars.length, _chars, 0);
+        return _chars;
+    }
+
+    /** The machine under test. */
+    private Machine _machine;
+
+    /** The message to convert. */
+    private String _message;
+
+    /** The message as characters (converted in place, so it changes). */
+    private char[] _chars;
+
+    /** The message as alphabet indices. */
+    private int[] _indices;
+
+}
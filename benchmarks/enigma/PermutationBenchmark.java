@@ -0,0 +1,80 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks for Permutation.permute and Permutation.invert, and for the
+ *  CharacterRange lookups that surround them in Machine.convert.
+ *  @author Aarini
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PermutationBenchmark {
+
+    /** Number of characters in the alphabet. */
+    @Param({"26", "64", "256"})
+    public int size;
+
+    /** Build the alphabet and a random permutation of it. */
+    @Setup
+    public void setUp() {
+        String chars = Configs.alphabet(size);
+        _alphabet = new CharacterRange(chars);
+        _perm = new Permutation(
+            Configs.cycles(chars, false, new Random(Configs.SEED)),
+            _alphabet);
+    }
+
+    /** Apply the permutation to every index of the alphabet. */
+    @Benchmark
+    public int permute() {
+        int sum = 0;
+        for (int i = 0; i < size; i += 1) {
+            sum += _perm.permute(i);
+        }
+        return sum;
+    }
+
+    /** Apply the inverse permutation to every index of the alphabet. */
+    @Benchmark
+    public int invert() {
+        int sum = 0;
+        for (int i = 0; i < size; i += 1) {
+            sum += _perm.invert(i);
+        }
+        return sum;
+    }
+
+    /** Look up every character of the alphabet by index and back. */
+    @Benchmark
+    public int toCharToInt() {
+        int sum = 0;
+        for (int i = 0; i < size; i += 1) {
+            sum += _alphabet.toInt(_alphabet.toChar(i));
+        }
+        return sum;
+    }
+
+    /** The alphabet being permuted. */
+    private Alphabet _alphabet;
+
+    /** The permutation under test. */
+    private Permutation _perm;
+
+}
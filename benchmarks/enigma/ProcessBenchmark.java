@@ -0,0 +1,71 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** End-to-end benchmarks of enigma.Main processing generated input files
+ *  in each of its modes.
+ *  @author Aarini
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProcessBenchmark {
+
+    /** Number of characters in the alphabet. */
+    @Param({"26", "256"})
+    public int size;
+
+    /** Number of rotor slots (all but two hold moving rotors). */
+    @Param({"5", "8"})
+    public int rotors;
+
+    /** Number of message characters in the input file. */
+    @Param({"100000", "10000000"})
+    public int length;
+
+    /** Extra options to Main for the process benchmark. */
+    @Param({"", "--mmap", "--parallel", "--chunk-size=1000000"})
+    public String options;
+
+    /** Write the configuration and input files. */
+    @Setup
+    public void setUp() throws IOException {
+        _config = Configs.tempFile(Configs.config(size, rotors)).getPath();
+        _input = Configs.tempFile(Configs.input(size, rotors, length))
+            .getPath();
+        File output = File.createTempFile("enigma", ".out");
+        output.deleteOnExit();
+        _output = output.getPath();
+    }
+
+    /** Convert the whole input file. */
+    @Benchmark
+    public void process() {
+        if (options.isEmpty()) {
+            Main.main(_config, _input, _output);
+        } else {
+            Main.main(options, _config, _input, _output);
+        }
+    }
+
+    /** Names of the generated files. */
+    private String _config, _input, _output;
+
+}
@@ -0,0 +1,69 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks for Rotor.convertForward and Rotor.convertBackward.
+ *  @author Aarini
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RotorBenchmark {
+
+    /** Number of characters in the alphabet. */
+    @Param({"26", "64", "256"})
+    public int size;
+
+    /** Build a moving rotor with a random wiring, part way round and with
+     *  a non-zero ring setting. */
+    @Setup
+    public void setUp() {
+        String chars = Configs.alphabet(size);
+        Alphabet alpha = new CharacterRange(chars);
+        _rotor = new MovingRotor("R", new Permutation(
+            Configs.cycles(chars, false, new Random(Configs.SEED)), alpha),
+            chars.substring(0, 1));
+        _rotor.set(size / 3);
+        _rotor.setRingSetting(chars.charAt(size / 2));
+    }
+
+    /** Pass every index of the alphabet forward through the rotor. */
+    @Benchmark
+    public int convertForward() {
+        int sum = 0;
+        for (int i = 0; i < size; i += 1) {
+            sum += _rotor.convertForward(i);
+        }
+        return sum;
+    }
+
+    /** Pass every index of the alphabet backward through the rotor. */
+    @Benchmark
+    public int convertBackward() {
+        int sum = 0;
+        for (int i = 0; i < size; i += 1) {
+            sum += _rotor.convertBackward(i);
+        }
+        return sum;
+    }
+
+    /** The rotor under test. */
+    private Rotor _rotor;
+
+}
@@ -1,5 +1,7 @@
 package enigma;
 
+import java.util.Arrays;
+
 /** An alphabet of encodable characters.  Provides a mapping from characters
  *  to and from indices into the alphabet.
  *  @author P. N. Hilfinger
@@ -19,4 +21,28 @@ abstract class Alphabet {
     /** Returns the index of character preprocess(CH), which must be in
      *  the alphabet. This is the inverse of toChar(). */
     abstract int toInt(char ch);
+
+    /** Returns a table whose entry B, for 0 <= B < 256, is the index of
+     *  the character whose code is B, or -1 if that character is not in
+     *  the alphabet.  Returns null if the alphabet has characters that are
+     *  not ASCII, and so cannot be read and written one byte apiece.  The
+     *  table may be shared and must not be modified. */
+    int[] byteTable() {
+        int[] result = new int[BYTE_VALUES];
+        Arrays.fill(result, -1);
+        for (int i = size() - 1; i >= 0; i--) {
+            char ch = toChar(i);
+            if (ch > MAX_ASCII) {
+                return null;
+            }
+            result[ch] = i;
+        }
+        return result;
+    }
+
+    /** Number of distinct byte values. */
+    static final int BYTE_VALUES = 256;
+
+    /** Largest ASCII character code. */
+    static final int MAX_ASCII = 0x7f;
 }
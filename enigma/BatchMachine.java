@@ -0,0 +1,291 @@
+package enigma;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** Many copies of one machine, called lanes, sharing its rotors and
+ *  plugboard but each with rotor positions of its own, which convert one
+ *  message per lane in lockstep: every step advances every lane and
+ *  converts one character of each message.  This suits jobs that convert
+ *  many messages of the same length under different start positions, such
+ *  as trying candidate keys.
+ *
+ *  State is kept struct-of-arrays style, one array per rotor slot indexed
+ *  by lane, and wiring is flattened into tables indexed by offset times
+ *  alphabet size plus character, so that a step is the same short
+ *  sequence of table reads in every lane.  As in CompiledMachine, each
+ *  lane keeps the substitution performed by all its rotors but the
+ *  rightmost, rebuilt only when one of them moves, so a character costs
+ *  three table reads.  This class converts lane by lane; the vectorized
+ *  subclass in simd/, which create() uses when it is available, converts
+ *  several lanes per instruction with the Vector API's gathers.
+ *  @author Aarini
+ */
+class BatchMachine {
+
+    /** Return a batch of LANES machines whose slots hold ROTORS
+     *  (ROTORS[0] being the reflector) and whose plugboard is PLUGBOARD,
+     *  vectorized if the vectorized implementation is present and the
+     *  jdk.incubator.vector module is loaded.  All rotors start at
+     *  setting 0 with ring setting 0. */
+    static BatchMachine create(Rotor[] rotors, Permutation plugboard,
+                               int lanes) {
+        if (VECTORIZED != null) {
+            try {
+                return (BatchMachine)
+                    VECTORIZED.newInstance(rotors, plugboard, lanes);
+            } catch (InvocationTargetException excp) {
+                if (excp.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) excp.getCause();
+                }
+            } catch (ReflectiveOperationException excp) {
+                /* Fall back to converting lane by lane. */
+            }
+        }
+        return new BatchMachine(rotors, plugboard, lanes);
+    }
+
+    /** Return true iff create() makes vectorized batches. */
+    static boolean vectorized() {
+        return VECTORIZED != null;
+    }
+
+    /** A batch of LANES machines whose slots hold ROTORS (ROTORS[0] being
+     *  the reflector) and whose plugboard is PLUGBOARD, converting lane by
+     *  lane.  All rotors start at setting 0 with ring setting 0. */
+    BatchMachine(Rotor[] rotors, Permutation plugboard, int lanes) {
+        this(rotors, plugboard, lanes, lanes);
+    }
+
+    /** A batch of LANES machines as for BatchMachine(ROTORS, PLUGBOARD,
+     *  LANES), whose per-lane arrays have WIDTH >= LANES elements, so that
+     *  subclasses may read and write whole vectors of lanes. */
+    BatchMachine(Rotor[] rotors, Permutation plugboard, int lanes,
+                 int width) {
+        int n = rotors.length;
+        _size = plugboard.size();
+        if (_size > MAX_TABLE_SIZE) {
+            throw error("alphabet too large for a batch");
+        }
+        if (lanes < 1) {
+            throw error("a batch needs at least one lane");
+        }
+        _numRotors = n;
+        _lanes = lanes;
+        _forward = new int[n][];
+        _inverse = new int[n][];
+        _notch = new int[n][_size];
+        _rotates = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            Permutation perm = rotors[i].permutation();
+            _forward[i] = perm.forwardTable();
+            _inverse[i] = perm.inverseTable();
+            _rotates[i] = rotors[i].rotates();
+            for (int k = 0; k < _size; k++) {
+                _notch[i][k] = rotors[i].notchAt(k) ? 1 : 0;
+            }
+        }
+        int last = n - 1;
+        int[] plug = plugboard.forwardTable();
+        _in = new int[_size * _size];
+        _out = new int[_size * _size];
+        for (int off = 0; off < _size; off++) {
+            for (int c = 0; c < _size; c++) {
+                _in[off * _size + c] = through(_forward[last], off, plug[c]);
+                _out[off * _size + c] = plug[through(_inverse[last], off, c)];
+            }
+        }
+        _pos = new int[n][width];
+        _offset = new int[n][width];
+        _inner = new int[width * _size];
+        _stale = new boolean[width];
+        Arrays.fill(_stale, 0, lanes, true);
+    }
+
+    /** Return the number of lanes. */
+    final int lanes() {
+        return _lanes;
+    }
+
+    /** Set the rotor in each slot I of lane LANE to setting POSITIONS[I]
+     *  and ring setting RINGS[I]. */
+    final void setPositions(int lane, int[] positions, int[] rings) {
+        for (int i = 0; i < _numRotors; i++) {
+            _pos[i][lane] = positions[i];
+            _offset[i][lane] = wrap(positions[i] - rings[i]);
+        }
+        _stale[lane] = true;
+    }
+
+    /** Return the current setting of the rotor in each slot of lane
+     *  LANE. */
+    final int[] positions(int lane) {
+        int[] result = new int[_numRotors];
+        for (int i = 0; i < _numRotors; i++) {
+            result[i] = _pos[i][lane];
+        }
+        return result;
+    }
+
+    /** Convert the first LEN characters of every lane's message in TEXT,
+     *  in place.  TEXT holds alphabet indices in column order: character
+     *  K of lane J's message is TEXT[K * lanes() + J].  Afterwards, every
+     *  lane has advanced LEN steps. */
+    final void convert(int[] text, int len) {
+        if (text.length < (long) len * _lanes) {
+            throw error("batch text too short");
+        }
+        for (int k = 0; k < len; k++) {
+            step();
+            refresh();
+            convertColumn(text, k * _lanes);
+        }
+    }
+
+    /** Advance the rotors of every lane as for one keystroke, marking as
+     *  stale each lane whose rotors other than the rightmost move. */
+    void step() {
+        int last = _numRotors - 1;
+        for (int j = 0; j < _lanes; j++) {
+            boolean atThis = atNotch(0, j);
+            boolean moved = false;
+            for (int i = 0; i <= last; i++) {
+                boolean atNext = i < last && atNotch(i + 1, j);
+                if (_rotates[i]
+                    && (i == last || atNext
+                        || i > 0 && _rotates[i - 1] && atThis)) {
+                    _pos[i][j] = _pos[i][j] + 1 == _size ? 0 : _pos[i][j] + 1;
+                    _offset[i][j] =
+                        _offset[i][j] + 1 == _size ? 0 : _offset[i][j] + 1;
+                    moved |= i < last;
+                }
+                atThis = atNext;
+            }
+            _stale[j] |= moved;
+        }
+    }
+
+    /** Return true iff the rotor in slot I of lane J is at a notch. */
+    private boolean atNotch(int i, int j) {
+        return _notch[i][_pos[i][j]] != 0;
+    }
+
+    /** Convert the character of each lane J at TEXT[START + J] in place,
+     *  with the rotors where they are now.  No lane is stale. */
+    void convertColumn(int[] text, int start) {
+        int[] offsets = _offset[_numRotors - 1];
+        for (int j = 0; j < _lanes; j++) {
+            int base = offsets[j] * _size;
+            int c = _in[base + text[start + j]];
+            c = _inner[j * _size + c];
+            text[start + j] = _out[base + c];
+        }
+    }
+
+    /** Rebuild the inner substitution of each stale lane. */
+    private void refresh() {
+        int last = _numRotors - 1;
+        for (int j = 0; j < _lanes; j++) {
+            if (!_stale[j]) {
+                continue;
+            }
+            for (int c = 0; c < _size; c++) {
+                int res = c;
+                for (int i = last - 1; i >= 0; i--) {
+                    res = through(_forward[i], _offset[i][j], res);
+                }
+                for (int i = 1; i < last; i++) {
+                    res = through(_inverse[i], _offset[i][j], res);
+                }
+                _inner[j * _size + c] = res;
+            }
+            _stale[j] = false;
+        }
+    }
+
+    /** Return the result of passing P through the wiring TABLE of a rotor
+     *  whose position less its ring setting is OFFSET. */
+    private int through(int[] table, int offset, int p) {
+        int k = p + offset;
+        if (k >= _size) {
+            k -= _size;
+        }
+        int r = table[k] - offset;
+        return r < 0 ? r + _size : r;
+    }
+
+    /** Return the value of P modulo my alphabet size. */
+    private int wrap(int p) {
+        int r = p % _size;
+        return r < 0 ? r + _size : r;
+    }
+
+    /** Return the constructor of the vectorized subclass, or null if it
+     *  is absent or cannot be loaded. */
+    private static Constructor<?> vectorizedConstructor() {
+        try {
+            return Class.forName(VECTORIZED_CLASS).getDeclaredConstructor(
+                Rotor[].class, Permutation.class, int.class);
+        } catch (ReflectiveOperationException | LinkageError excp) {
+            return null;
+        }
+    }
+
+    /** Name of the vectorized subclass, compiled separately in simd/. */
+    private static final String VECTORIZED_CLASS =
+        "enigma.VectorBatchMachine";
+
+    /** Constructor of the vectorized subclass, if available. */
+    private static final Constructor<?> VECTORIZED = vectorizedConstructor();
+
+    /** Largest alphabet for which batches can be made. */
+    static final int MAX_TABLE_SIZE = 256;
+
+    /** Size of the alphabet. */
+    final int _size;
+
+    /** Number of rotor slots. */
+    final int _numRotors;
+
+    /** Number of lanes. */
+    final int _lanes;
+
+    /** _notch[i][k] is 1 iff slot I's rotor has a notch at setting K,
+     *  and otherwise 0. */
+    final int[][] _notch;
+
+    /** True for the slots whose rotors rotate. */
+    final boolean[] _rotates;
+
+    /** _in[k * _size + c] is the result of passing C through the
+     *  plugboard and then the rightmost rotor at offset K. */
+    final int[] _in;
+
+    /** _out[k * _size + c] is the result of passing C back through the
+     *  rightmost rotor at offset K and then the plugboard. */
+    final int[] _out;
+
+    /** _pos[i][j] is the setting of the rotor in slot I of lane J. */
+    final int[][] _pos;
+
+    /** _offset[i][j] is _pos[i][j] less the ring setting, modulo the
+     *  alphabet size. */
+    final int[][] _offset;
+
+    /** _inner[j * _size + c] is the result of passing C through every
+     *  rotor of lane J but the rightmost, valid unless _stale[j]. */
+    final int[] _inner;
+
+    /** True for lanes whose _inner substitution must be rebuilt. */
+    final boolean[] _stale;
+
+    /** Forward wiring of the rotor in each slot. */
+    private final int[][] _forward;
+
+    /** Inverse wiring of the rotor in each slot. */
+    private final int[][] _inverse;
+
+}
@@ -0,0 +1,105 @@
+package enigma;
+
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** JUnit tests for the BatchMachine class.
+ *  @author Aarini
+ */
+public class BatchMachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final Rotor[] ROTORS =
+        rotors("B", "BETA", "III", "IV", "I");
+
+    private static final Permutation PLUGS = new Permutation(PLUGBOARD, UPPER);
+
+    /** Return random settings for the slots of ROTORS, using RANDOM,
+     *  with 0 for the reflector. */
+    private static int[] settings(Random random) {
+        int[] result = new int[ROTORS.length];
+        for (int i = 1; i < result.length; i++) {
+            result[i] = random.nextInt(UPPER.size());
+        }
+        return result;
+    }
+
+    /** Check that BATCH converts random messages of LEN characters from
+     *  random settings exactly as CompiledMachine does. */
+    private static void checkAgainstCompiled(BatchMachine batch, int len) {
+        Random random = new Random(len);
+        int lanes = batch.lanes();
+        int[][] positions = new int[lanes][], rings = new int[lanes][];
+        int[] text = new int[len * lanes];
+        for (int j = 0; j < lanes; j++) {
+            positions[j] = settings(random);
+            rings[j] = settings(random);
+            batch.setPositions(j, positions[j], rings[j]);
+        }
+        for (int k = 0; k < text.length; k++) {
+            text[k] = random.nextInt(UPPER.size());
+        }
+        int[] expected = text.clone();
+        batch.convert(text, len);
+        for (int j = 0; j < lanes; j++) {
+            CompiledMachine engine = new CompiledMachine(ROTORS, PLUGS);
+            engine.setPositions(positions[j], rings[j]);
+            for (int k = 0; k < len; k++) {
+                int c = expected[k * lanes + j];
+                assertEquals("lane " + j + ", character " + k,
+                             engine.convert(c), text[k * lanes + j]);
+            }
+            assertArrayEquals(engine.positions(), batch.positions(j));
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testMatchesCompiledMachine() {
+        checkAgainstCompiled(new BatchMachine(ROTORS, PLUGS, 37), 700);
+    }
+
+    @Test
+    public void testOneLane() {
+        checkAgainstCompiled(new BatchMachine(ROTORS, PLUGS, 1), 1000);
+    }
+
+    @Test
+    public void testCreate() {
+        checkAgainstCompiled(BatchMachine.create(ROTORS, PLUGS, 19),
+                             500);
+    }
+
+    @Test
+    public void testInvolution() {
+        BatchMachine batch = new BatchMachine(ROTORS, PLUGS, 3);
+        int[] start = {0, 0, 4, 20, 16};
+        int[] rings = {0, 0, 0, 1, 2};
+        int[] text = new int[60];
+        for (int k = 0; k < text.length; k++) {
+            text[k] = k % UPPER.size();
+        }
+        int[] original = text.clone();
+        for (int j = 0; j < 3; j++) {
+            batch.setPositions(j, start, rings);
+        }
+        batch.convert(text, 20);
+        for (int j = 0; j < 3; j++) {
+            batch.setPositions(j, start, rings);
+        }
+        batch.convert(text, 20);
+        assertArrayEquals(original, text);
+    }
+
+}
@@ -0,0 +1,454 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static enigma.EnigmaException.*;
+
+/** A simulation of the Turing-Welchman Bombe.  Given a crib (a fragment
+ *  of plaintext believed to lie at a known place in a ciphertext), it
+ *  finds the rotor orders and start positions that are consistent with
+ *  the crib under SOME plugboard, without trying plugboards one by one.
+ *
+ *  The crib and ciphertext form a menu: a graph whose nodes are letters,
+ *  with an edge between each crib letter and the cipher letter under it,
+ *  labelled by its position.  Since the rotors alone form an involution
+ *  S at each position, a plugboard P with P(c) = S(P(p)) for each edge
+ *  is what a stop requires.  For each start position, a hypothesis for
+ *  the plugboard partner of the menu's busiest letter is propagated along
+ *  the edges (and across the diagonal board, P(x) = y iff P(y) = x) in a
+ *  register per letter, held as a bitmask in a long.  A hypothesis that
+ *  gives some letter two partners is contradicted, along with every other
+ *  hypothesis it reached; a position with an uncontradicted hypothesis is
+ *  a stop.
+ *
+ *  The substitution of the rotors at each offset of the rightmost rotor is
+ *  computed once per setting of the slower rotors, so each position
+ *  of the crib costs an array read.  Rotor orders are searched in
+ *  parallel on a ForkJoinPool.  Only alphabets of at most 64 characters
+ *  are supported.  Ring settings are taken to be all 0.
+ *  @author Aarini
+ */
+final class Bombe {
+
+    /** A rotor order and start position consistent with the crib. */
+    static final class Stop {
+
+        /** A stop with rotors named NAMES (reflector first), rotor settings
+         *  POSITIONS for the slots after the reflector, and implied
+         *  plugboard pairs STECKERS, found for the ORDERth rotor order at
+         *  the INDEXth start position. */
+        Stop(String[] names, String positions, String steckers,
+             int order, long index) {
+            _names = names.clone();
+            _positions = positions;
+            _steckers = steckers;
+            _order = order;
+            _index = index;
+        }
+
+        /** Return the names of my rotors, reflector first. */
+        String[] names() {
+            return _names.clone();
+        }
+
+        /** Return my rotor settings. */
+        String positions() {
+            return _positions;
+        }
+
+        /** Return the plugboard pairs implied by the crib, as cycles
+         *  (letters found to be unsteckered are omitted). */
+        String steckers() {
+            return _steckers;
+        }
+
+        /** Return a settings line for me, with the implied plugboard. */
+        String settingsLine() {
+            String result = "* " + String.join(" ", _names) + " "
+                + _positions;
+            return _steckers.isEmpty() ? result : result + " " + _steckers;
+        }
+
+        @Override
+        public String toString() {
+            return settingsLine();
+        }
+
+        /** Names of my rotors. */
+        private final String[] _names;
+
+        /** My rotor settings and implied steckers. */
+        private final String _positions, _steckers;
+
+        /** Number of my rotor order. */
+        private final int _order;
+
+        /** Number of my start position. */
+        private final long _index;
+    }
+
+    /** A Bombe trying rotors from ROTORS in a machine with alphabet ALPHA,
+     *  NUMROTORS slots and NUMPAWLS pawls.  Initially, all settings of
+     *  the moving rotors are tried. */
+    Bombe(Alphabet alpha, int numRotors, int numPawls,
+          Collection<Rotor> rotors) {
+        if (alpha.size() > Long.SIZE) {
+            throw error("alphabet too large for bombe");
+        }
+        _alphabet = alpha;
+        _numRotors = numRotors;
+        _numPawls = numPawls;
+        _rotors = new ArrayList<>(rotors);
+        _positionSlots = numPawls;
+        _parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    /** Try all settings of the rightmost K rotors (the others being
+     *  left at 0). */
+    void setPositionSlots(int k) {
+        if (k < 0 || k >= _numRotors) {
+            throw error("bad number of position slots");
+        }
+        _positionSlots = k;
+    }
+
+    /** Stop searching once N stops have been found, and return only N.
+     *  When searching on more than one thread, which stops these are
+     *  depends on the order in which the threads reach them. */
+    void setMaxStops(int n) {
+        _maxStops = Math.max(1, n);
+    }
+
+    /** Search on N threads. */
+    void setParallelism(int n) {
+        _parallelism = Math.max(1, n);
+    }
+
+    /** Return the stops for CRIB placed under CIPHERTEXT starting at
+     *  character OFFSET, ordered by rotor order and start position. */
+    List<Stop> search(String crib, String ciphertext, int offset) {
+        if (offset < 0 || offset + crib.length() > ciphertext.length()) {
+            throw error("crib does not fit in ciphertext");
+        }
+        if (crib.isEmpty()) {
+            throw error("empty crib");
+        }
+        buildMenu(crib, ciphertext, offset);
+        _offset = offset;
+        _orders = KeySearch.orders(_rotors, _numRotors, _numPawls);
+        _stops = new ArrayList<>();
+        _enough = false;
+        ForkJoinPool pool = new ForkJoinPool(_parallelism);
+        try {
+            pool.invoke(new Search(0, _orders.size()));
+        } finally {
+            pool.shutdown();
+        }
+        _stops.sort(Comparator.<Stop>comparingInt(s -> s._order)
+                    .thenComparingLong(s -> s._index));
+        return _stops.size() > _maxStops
+            ? new ArrayList<>(_stops.subList(0, _maxStops)) : _stops;
+    }
+
+    /** Build the menu for CRIB under CIPHERTEXT at OFFSET: for each letter
+     *  X, _edgeOther[_edgeStart[X] .. _edgeStart[X + 1] - 1] are the
+     *  letters joined to X and _edgeIndex the crib positions joining them.
+     *  Also choose _testLetter. */
+    private void buildMenu(String crib, String ciphertext, int offset) {
+        int size = _alphabet.size();
+        int n = crib.length();
+        int[] plain = new int[n], cipher = new int[n];
+        int[] degree = new int[size];
+        for (int i = 0; i < n; i++) {
+            plain[i] = _alphabet.toInt(crib.charAt(i));
+            cipher[i] = _alphabet.toInt(ciphertext.charAt(offset + i));
+            if (plain[i] == cipher[i]) {
+                throw error("crib encrypts a letter to itself");
+            }
+            degree[plain[i]] += 1;
+            degree[cipher[i]] += 1;
+        }
+        _edgeStart = new int[size + 1];
+        _testLetter = 0;
+        for (int x = 0; x < size; x++) {
+            _edgeStart[x + 1] = _edgeStart[x] + degree[x];
+            if (degree[x] > degree[_testLetter]) {
+                _testLetter = x;
+            }
+        }
+        _edgeOther = new int[2 * n];
+        _edgeIndex = new int[2 * n];
+        int[] fill = new int[size];
+        for (int i = 0; i < n; i++) {
+            addEdge(plain[i], cipher[i], i, fill);
+            addEdge(cipher[i], plain[i], i, fill);
+        }
+        _cribLength = n;
+    }
+
+    /** Record an edge from letter A to letter B for crib position I, where
+     *  FILL[A] is the number of A's edges recorded so far. */
+    private void addEdge(int a, int b, int i, int[] fill) {
+        int k = _edgeStart[a] + fill[a];
+        _edgeOther[k] = b;
+        _edgeIndex[k] = i;
+        fill[a] += 1;
+    }
+
+    /** The rotor orders numbered LO to HI (exclusive). */
+    private class Search extends RecursiveAction {
+
+        /** Search rotor orders LO to HI (exclusive). */
+        Search(int lo, int hi) {
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_enough) {
+                return;
+            } else if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Search(_lo, mid), new Search(mid, _hi));
+            } else if (_lo < _hi) {
+                new Tester(_lo).run();
+            }
+        }
+
+        /** The range of rotor orders to search. */
+        private final int _lo, _hi;
+    }
+
+    /** The state used to test every start position of one rotor order. */
+    private class Tester {
+
+        /** A tester for the ORDERth rotor order. */
+        Tester(int order) {
+            int size = _alphabet.size();
+            _order = order;
+            _engine = new CompiledMachine(_orders.get(order),
+                                          new Permutation("", _alphabet));
+            _scrambler = new int[_cribLength][];
+            _registers = new long[size];
+            _queue = new int[size * size];
+            _cacheKeys = new long[TABLE_CACHE];
+            _cache = new int[TABLE_CACHE][size][size];
+            Arrays.fill(_cacheKeys, -1);
+        }
+
+        /** Test every start position, recording stops. */
+        void run() {
+            int size = _alphabet.size();
+            int last = _numRotors - 1;
+            int[] start = new int[_numRotors];
+            int[] rings = new int[_numRotors];
+            long count = KeySearch.power(size, _positionSlots);
+            for (long p = 0; p < count && !_enough; p++) {
+                _engine.setPositions(start, rings);
+                for (int s = 0; s < _offset; s++) {
+                    _engine.step();
+                }
+                for (int i = 0; i < _cribLength; i++) {
+                    _engine.step();
+                    _scrambler[i] = tables()[_engine.offset(last)];
+                }
+                int partner = test();
+                if (partner >= 0) {
+                    record(start, p);
+                }
+                for (int i = last; i >= _numRotors - _positionSlots; i--) {
+                    start[i] = start[i] + 1 == size ? 0 : start[i] + 1;
+                    if (start[i] != 0) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        /** Return the scrambler tables for the current setting of the
+         *  slower rotors, computing them if they are not cached. */
+        private int[][] tables() {
+            long key = _engine.slowState();
+            for (int k = 0; k < TABLE_CACHE; k++) {
+                if (_cacheKeys[k] == key) {
+                    return _cache[k];
+                }
+            }
+            int k = _nextCache;
+            _nextCache = (_nextCache + 1) % TABLE_CACHE;
+            _cacheKeys[k] = key;
+            _engine.scramblers(_cache[k]);
+            return _cache[k];
+        }
+
+        /** Return a plugboard partner for the test letter that no
+         *  contradiction rules out at the current position, leaving the
+         *  registers holding its consequences, or -1 if there is none. */
+        private int test() {
+            long ruledOut = 0;
+            for (int v = 0; v < _alphabet.size(); v++) {
+                if ((ruledOut & (1L << v)) != 0) {
+                    continue;
+                }
+                Arrays.fill(_registers, 0);
+                _queued = 0;
+                if (propagate(_testLetter, v)) {
+                    return v;
+                }
+                ruledOut |= _registers[_testLetter];
+            }
+            return -1;
+        }
+
+        /** Assume that the plugboard maps X to Y and follow the
+         *  consequences through the menu.  Return false if some letter is
+         *  found to have two partners. */
+        private boolean propagate(int x, int y) {
+            if (!assume(x, y)) {
+                return false;
+            }
+            for (int q = 0; q < _queued; q++) {
+                int a = _queue[q] / _alphabet.size();
+                int b = _queue[q] % _alphabet.size();
+                for (int e = _edgeStart[a]; e < _edgeStart[a + 1]; e++) {
+                    int c = _scrambler[_edgeIndex[e]][b];
+                    if (!assume(_edgeOther[e], c)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /** Record that the plugboard maps X to Y and Y to X, queueing any
+         *  new facts.  Return false if this gives X or Y a second
+         *  partner. */
+        private boolean assume(int x, int y) {
+            return light(x, y) && light(y, x);
+        }
+
+        /** Light bit Y of register X.  Return false if another bit is
+         *  already lit there. */
+        private boolean light(int x, int y) {
+            long bit = 1L << y;
+            long reg = _registers[x];
+            if ((reg & bit) != 0) {
+                return true;
+            }
+            _registers[x] = reg | bit;
+            if (reg != 0) {
+                return false;
+            }
+            _queue[_queued] = x * _alphabet.size() + y;
+            _queued += 1;
+            return true;
+        }
+
+        /** Record a stop at start position START, the Pth tried. */
+        private void record(int[] start, long p) {
+            StringBuilder positions = new StringBuilder();
+            for (int i = 1; i < _numRotors; i++) {
+                positions.append(_alphabet.toChar(start[i]));
+            }
+            StringBuilder steckers = new StringBuilder();
+            for (int x = 0; x < _alphabet.size(); x++) {
+                if (_registers[x] == 0) {
+                    continue;
+                }
+                int y = Long.numberOfTrailingZeros(_registers[x]);
+                if (x < y) {
+                    if (steckers.length() > 0) {
+                        steckers.append(' ');
+                    }
+                    steckers.append('(').append(_alphabet.toChar(x))
+                        .append(_alphabet.toChar(y)).append(')');
+                }
+            }
+            Stop stop = new Stop(KeySearch.names(_orders.get(_order)),
+                                 positions.toString(), steckers.toString(),
+                                 _order, p);
+            synchronized (_stops) {
+                _stops.add(stop);
+                if (_stops.size() >= _maxStops) {
+                    _enough = true;
+                }
+            }
+        }
+
+        /** Number of my rotor order. */
+        private final int _order;
+
+        /** Rotors of my order, compiled without a plugboard. */
+        private final CompiledMachine _engine;
+
+        /** Substitution of the rotors at each crib position. */
+        private final int[][] _scrambler;
+
+        /** Bit Y of _registers[X] is lit if X is found to be steckered
+         *  to Y. */
+        private final long[] _registers;
+
+        /** Lit register bits (X * alphabet size + Y) not yet followed. */
+        private final int[] _queue;
+
+        /** Number of entries in _queue. */
+        private int _queued;
+
+        /** Settings of the slower rotors whose tables are in _cache. */
+        private final long[] _cacheKeys;
+
+        /** Recently used scrambler tables, by offset of the rightmost
+         *  rotor. */
+        private final int[][][] _cache;
+
+        /** Entry of _cache to replace next. */
+        private int _nextCache;
+    }
+
+    /** Number of sets of scrambler tables each Tester keeps. */
+    private static final int TABLE_CACHE = 4;
+
+    /** The machine's alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Number of rotor slots and pawls. */
+    private final int _numRotors, _numPawls;
+
+    /** The available rotors (used only for their wiring). */
+    private final List<Rotor> _rotors;
+
+    /** Number of rightmost slots whose settings are tried. */
+    private int _positionSlots;
+
+    /** Most stops reported. */
+    private int _maxStops = Integer.MAX_VALUE;
+
+    /** True once _maxStops stops have been found during a search. */
+    private volatile boolean _enough;
+
+    /** Number of threads searching. */
+    private int _parallelism;
+
+    /** Every rotor order that fits the slots, during a search. */
+    private List<Rotor[]> _orders;
+
+    /** The menu, in the form described by buildMenu. */
+    private int[] _edgeStart, _edgeOther, _edgeIndex;
+
+    /** The letter whose partner is hypothesized at each position. */
+    private int _testLetter;
+
+    /** Length of the crib and its offset in the ciphertext. */
+    private int _cribLength, _offset;
+
+    /** Stops found during a search. */
+    private List<Stop> _stops;
+
+}
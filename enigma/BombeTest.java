@@ -0,0 +1,95 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** JUnit tests for the Bombe class.
+ *  @author Aarini
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private ArrayList<Rotor> allRotors = rotors();
+
+    private static final String PLAIN =
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOODMADEOFSLIDING"
+        + "FOLDINGROSEWOODNEATLYPUTITALLTOGETHER";
+
+    private static final String STECKERS = "(HQ) (EX) (IP) (RT) (BY) (OW)";
+
+    /** Return PLAIN encrypted with the rotors named in NAMES, the
+     *  settings SETTINGS and the plugboard STECKERS. */
+    private String encrypt(String[] names, String settings) {
+        Machine machine = new Machine(UPPER, 5, 3, rotors());
+        machine.insertRotors(names);
+        machine.setRotors(settings);
+        machine.setPlugboard(new Permutation(STECKERS, UPPER));
+        return machine.convert(PLAIN);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testFindsStop() {
+        String cipher = encrypt(new String[] {"B", "BETA", "III", "IV", "I"},
+                                "AAKX");
+        Bombe bombe = new Bombe(UPPER, 5, 3, allRotors);
+        bombe.setPositionSlots(2);
+        bombe.setParallelism(2);
+        List<Bombe.Stop> stops =
+            bombe.search(PLAIN.substring(20, 50), cipher, 20);
+        Bombe.Stop found = null;
+        for (Bombe.Stop stop : stops) {
+            if (stop.settingsLine().startsWith("* B BETA III IV I AAKX")) {
+                found = stop;
+            }
+        }
+        assertNotNull("true setting not among " + stops, found);
+        assertTrue("too many stops", stops.size() < 20);
+        for (String pair : found.steckers().split(" ")) {
+            assertTrue("wrong stecker " + pair, STECKERS.contains(pair));
+        }
+    }
+
+    @Test
+    public void testMaxStops() {
+        String cipher = encrypt(new String[] {"B", "BETA", "I", "II", "III"},
+                                "AACF");
+        String crib = PLAIN.substring(0, 8);
+        Bombe bombe = new Bombe(UPPER, 5, 3, allRotors);
+        bombe.setPositionSlots(2);
+        List<String> all = new ArrayList<>();
+        for (Bombe.Stop stop : bombe.search(crib, cipher, 0)) {
+            all.add(stop.settingsLine());
+        }
+        assertTrue("too few stops to limit", all.size() > 1);
+
+        bombe.setMaxStops(1);
+        List<Bombe.Stop> stops = bombe.search(crib, cipher, 0);
+        assertEquals(1, stops.size());
+        assertTrue(all.contains(stops.get(0).settingsLine()));
+
+        bombe.setParallelism(1);
+        stops = bombe.search(crib, cipher, 0);
+        assertEquals(1, stops.size());
+        assertEquals(all.get(0), stops.get(0).settingsLine());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testSelfEncryptingCrib() {
+        Bombe bombe = new Bombe(UPPER, 5, 3, allRotors);
+        bombe.search("ABC", "XBZ", 0);
+    }
+
+}
@@ -1,11 +1,14 @@
 package enigma;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 import static enigma.EnigmaException.*;
 
 /** An Alphabet consisting of the Unicode characters in a certain range in
- *  order.
+ *  order.  Lookups in either direction are constant time: characters are
+ *  kept in a char array, and the reverse mapping is either a dense table
+ *  covering the span of the alphabet or, for alphabets spread widely over
+ *  Unicode, a small open-addressed hash table.
  *  @author Aarini
  */
 class CharacterRange extends Alphabet {
@@ -13,59 +16,130 @@ class CharacterRange extends Alphabet {
     /** An alphabet consisting of all characters in ALPH,
      *  inclusive. */
     CharacterRange(String alph) {
-        for (int c = 0; c < alph.length(); c++) {
-            _charArray.add(c, alph.charAt(c));
-        }
+        this(alph.toCharArray());
     }
 
     /** An alphabet consisting of all characters between FIRST
      * and LAST (Strings), inclusive. */
     CharacterRange(char first, char last) {
-        _first = first;
-        _last = last;
-        if (_first > _last) {
-            throw error("empty range of characters");
+        this(range(first, last));
+    }
+
+    /** An alphabet consisting of the characters in CHARS, in order. */
+    private CharacterRange(char[] chars) {
+        _chars = chars;
+        char lo = Character.MAX_VALUE, hi = Character.MIN_VALUE;
+        for (char c : _chars) {
+            lo = (char) Math.min(lo, c);
+            hi = (char) Math.max(hi, c);
         }
-        int i = 0;
+        _first = lo;
+        _last = hi;
+        if (_chars.length == 0 || _last - _first >= MAX_DENSE_SPAN) {
+            int cap = Integer.highestOneBit(Math.max(1, _chars.length)) * 4;
+            _keys = new char[cap];
+            _index = new int[cap];
+        } else {
+            _keys = null;
+            _index = new int[_last - _first + 1];
+        }
+        Arrays.fill(_index, -1);
+        for (int i = 0; i < _chars.length; i++) {
+            if (_index[slot(_chars[i])] < 0) {
+                put(_chars[i], i);
+            }
+        }
+        _byteTable = super.byteTable();
+    }
 
-        for (char c = _first; c <= _last; c++) {
-            _charArray.add(i, c);
-            i++;
+    /** Returns the characters FIRST through LAST, inclusive. */
+    private static char[] range(char first, char last) {
+        if (first > last) {
+            throw error("empty range of characters");
+        }
+        char[] result = new char[last - first + 1];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (char) (first + i);
         }
+        return result;
     }
 
     @Override
     int size() {
-        int result = _charArray.size();
-        return result;
+        return _chars.length;
     }
 
     @Override
     boolean contains(char ch) {
-        return _charArray.contains(ch);
+        int s = slot(ch);
+        return s >= 0 && _index[s] >= 0;
     }
 
     @Override
     char toChar(int index) {
-        if (index >= size()) {
+        if (index < 0 || index >= size()) {
             throw error("character index out of range");
         }
-        return _charArray.get(index);
+        return _chars[index];
+    }
+
+    @Override
+    int[] byteTable() {
+        return _byteTable;
     }
 
     @Override
     int toInt(char ch) {
-        if (!contains(ch)) {
+        int s = slot(ch);
+        if (s < 0 || _index[s] < 0) {
             throw error("character out of range");
         }
-        int res = _charArray.indexOf(ch);
-        return res;
+        return _index[s];
     }
 
+    /** Returns the position of CH in _index: either its entry, an empty
+     *  entry where it would go, or -1 if CH is outside the dense span. */
+    private int slot(char ch) {
+        if (_keys == null) {
+            return ch < _first || ch > _last ? -1 : ch - _first;
+        }
+        int mask = _keys.length - 1;
+        int s = (ch * HASH_MULTIPLIER) & mask;
+        while (_index[s] >= 0 && _keys[s] != ch) {
+            s = (s + 1) & mask;
+        }
+        return s;
+    }
+
+    /** Record that character CH has index INDEX. */
+    private void put(char ch, int index) {
+        int s = slot(ch);
+        if (_keys != null) {
+            _keys[s] = ch;
+        }
+        _index[s] = index;
+    }
+
+    /** Largest span of character codes indexed by a dense table. */
+    private static final int MAX_DENSE_SPAN = 1 << 12;
+
+    /** Odd multiplier used to scatter characters in the hash table. */
+    private static final int HASH_MULTIPLIER = 0x9E3B;
+
     /** Range of characters in this Alphabet. */
-    private char _first, _last;
+    private final char _first, _last;
+
+    /** Characters in this Alphabet, in order. */
+    private final char[] _chars;
+
+    /** Hash-table keys, or null when _index is dense. */
+    private final char[] _keys;
+
+    /** Reverse mapping from characters to indices (-1 if absent). */
+    private final int[] _index;
 
-    /** Arraylist of characters in this Alphabet. */
-    private ArrayList<Character> _charArray = new ArrayList<>();
+    /** Mapping from byte values to indices, or null if this Alphabet is
+     *  not all ASCII (see byteTable()). */
+    private final int[] _byteTable;
 
 }
@@ -19,6 +19,31 @@ public class CharacterRangeTest {
     }
 
 
+    @Test
+    public void testWideAlphabet() {
+        String chars = "A\u00e9\u4e2d\uffef0";
+        Alphabet alph = new CharacterRange(chars);
+        assertEquals(5, alph.size());
+        for (int i = 0; i < chars.length(); i += 1) {
+            assertTrue(alph.contains(chars.charAt(i)));
+            assertEquals(i, alph.toInt(chars.charAt(i)));
+            assertEquals(chars.charAt(i), alph.toChar(i));
+        }
+        assertFalse(alph.contains('B'));
+        assertFalse(alph.contains('\u4e2e'));
+    }
+
+    @Test
+    public void testByteTable() {
+        int[] table = new CharacterRange("QWERTY").byteTable();
+        assertEquals(256, table.length);
+        assertEquals(0, table['Q']);
+        assertEquals(5, table['Y']);
+        assertEquals(-1, table['A']);
+        assertEquals(-1, table[0xc3]);
+        assertNull(new CharacterRange("A\u00e9").byteTable());
+    }
+
     @Test (expected = EnigmaException.class)
     public void testToIntExceptionHandling() throws EnigmaException {
         Alphabet alph = new CharacterRange('A', 'X');
@@ -0,0 +1,182 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+
+import java.util.ArrayList;
+
+import static enigma.EnigmaException.*;
+
+/** A client for Server, which sends it one job and copies the results to
+ *  a file or the standard output.
+ *  @author Aarini
+ */
+public final class Client {
+
+    /** Send a job to a server as specified by ARGS, where
+     *  1 <= ARGS.length <= 3 once options are removed.  ARGS[0] names the
+     *  configuration file; the optional ARGS[1] and ARGS[2] name the input
+     *  and output files, as for Main (by default, the standard input and
+     *  output).  Exits with code 1 after printing the server's error
+     *  message on the standard error if the job fails.
+     *
+     *  Options:
+     *    --port=N       connect to TCP port N of the loopback interface
+     *                   (Server.DEFAULT_PORT by default).
+     *    --socket=PATH  connect to the Unix domain socket at PATH instead. */
+    public static void main(String... args) {
+        SocketAddress address = null;
+        ArrayList<String> files = new ArrayList<>();
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--port=")) {
+                    address = tcp(Integer.parseInt(arg.substring(7)));
+                } else if (arg.startsWith("--socket=")) {
+                    address = UnixDomainSocketAddress.of(arg.substring(9));
+                } else if (arg.startsWith("--")) {
+                    throw error("unknown option: %s", arg);
+                } else {
+                    files.add(arg);
+                }
+            }
+            if (files.size() < 1 || files.size() > 3) {
+                throw error("Only 1, 2, or 3 command-line arguments allowed");
+            }
+            if (address == null) {
+                address = tcp(Server.DEFAULT_PORT);
+            }
+            InputStream in = files.size() > 1
+                ? new FileInputStream(files.get(1)) : System.in;
+            OutputStream out = files.size() > 2
+                ? new FileOutputStream(files.get(2)) : System.out;
+            String status;
+            try (in; out) {
+                status = run(address, files.get(0), in, out);
+            }
+            if (status.equals(Server.OK)) {
+                return;
+            }
+            System.err.println(status);
+        } catch (NumberFormatException excp) {
+            System.err.printf("Error: bad port number%n");
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        } catch (IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the address of TCP port PORT on the loopback interface. */
+    static SocketAddress tcp(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /** Send the server at ADDRESS a job converting the messages in IN with
+     *  the configuration in the file named CONFIGFILE, and copy the
+     *  results to OUT.  Return the job's status line (without its line
+     *  terminator). */
+    static String run(SocketAddress address, String configFile,
+                      InputStream in, OutputStream out) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            String header = Paths.get(configFile).toAbsolutePath()
+                + System.lineSeparator();
+            Thread sender = new Thread(() -> send(channel, header, in));
+            sender.start();
+            ByteArrayOutputStream held = new ByteArrayOutputStream();
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buf) >= 0) {
+                held.write(buf.array(), 0, buf.position());
+                boolean newLine = false;
+                for (int i = 0; i < buf.position() && !newLine; i++) {
+                    newLine = buf.array()[i] == '\n';
+                }
+                buf.clear();
+                if (!newLine) {
+                    continue;
+                }
+                byte[] bytes = held.toByteArray();
+                int start = startOfLastLine(bytes);
+                if (start > 0) {
+                    out.write(bytes, 0, start);
+                    held.reset();
+                    held.write(bytes, start, bytes.length - start);
+                }
+            }
+            out.flush();
+            try {
+                sender.join();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+            return lastLine(held.toString(Charset.defaultCharset().name()));
+        }
+    }
+
+    /** Return the index in BYTES at which its last line (which may or may
+     *  not be terminated) starts. */
+    private static int startOfLastLine(byte[] bytes) {
+        int k = bytes.length;
+        if (k > 0 && bytes[k - 1] == '\n') {
+            k -= 1;
+        }
+        while (k > 0 && bytes[k - 1] != '\n') {
+            k -= 1;
+        }
+        return k;
+    }
+
+    /** Return LINE without its line terminator. */
+    private static String lastLine(String line) {
+        String result = line;
+        while (result.endsWith("\n") || result.endsWith("\r")) {
+            result = result.substring(0, result.length() - 1);
+        }
+        return result;
+    }
+
+    /** Send HEADER and then the contents of IN on CHANNEL, and shut down
+     *  its output.  Stops quietly if the server stops reading. */
+    private static void send(SocketChannel channel, String header,
+                             InputStream in) {
+        try {
+            byte[] bytes = header.getBytes(Charset.defaultCharset());
+            write(channel, bytes, bytes.length);
+            byte[] buf = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                write(channel, buf, n);
+            }
+            channel.shutdownOutput();
+        } catch (IOException excp) {
+            /* The server has finished with the job. */
+            return;
+        }
+    }
+
+    /** Write the first LEN bytes of BYTES to CHANNEL. */
+    private static void write(SocketChannel channel, byte[] bytes, int len)
+        throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes, 0, len);
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    /** Size of the transfer buffers. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+}
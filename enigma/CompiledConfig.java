@@ -0,0 +1,260 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static enigma.EnigmaException.*;
+
+/** A configuration in the compact binary form written by
+ *  Main --compile-config, which is loaded without any parsing: the
+ *  alphabet, the wiring of every rotor as forward and inverse tables, its
+ *  notches as a bitset and its type are read straight into the arrays
+ *  from which Permutations and RotorSpecs are built.  A compiled file is
+ *  a snapshot; it is not updated when the text configuration changes.
+ *
+ *  The file is big-endian: the MAGIC and VERSION ints; the alphabet size
+ *  N and its N chars; the numbers of rotor slots and pawls and of
+ *  available rotors; and then for each rotor, its name (length and
+ *  chars), a type byte (MOVING, FIXED or REFLECTOR), its forward and
+ *  inverse tables of N entries each, and its notches as (N + 7) / 8
+ *  bytes, setting K being bit K % 8 of byte K / 8.  Table entries are
+ *  unsigned bytes if N <= 256, and otherwise chars.
+ *  @author Aarini
+ */
+final class CompiledConfig {
+
+    /** A configuration with alphabet ALPHABET, NUMROTORS rotor slots and
+     *  NUMPAWLS pawls, and the available rotors in REGISTRY. */
+    CompiledConfig(Alphabet alphabet, int numRotors, int numPawls,
+                   RotorRegistry registry) {
+        _alphabet = alphabet;
+        _numRotors = numRotors;
+        _numPawls = numPawls;
+        _registry = registry;
+    }
+
+    /** Return true iff the file named FILENAME begins as a compiled
+     *  configuration does. */
+    static boolean isCompiled(String fileName) throws IOException {
+        try (InputStream in = new FileInputStream(fileName)) {
+            byte[] head = in.readNBytes(Integer.BYTES);
+            return head.length == Integer.BYTES
+                && ByteBuffer.wrap(head).getInt() == MAGIC;
+        }
+    }
+
+    /** Return the configuration in the compiled file named FILENAME,
+     *  which is mapped into memory while it is read. */
+    static CompiledConfig load(String fileName) throws IOException {
+        try (FileChannel channel =
+                 new FileInputStream(fileName).getChannel()) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY,
+                                    0, channel.size()));
+        }
+    }
+
+    /** Return the configuration in compiled form in BUF, starting at its
+     *  position. */
+    static CompiledConfig read(ByteBuffer buf) {
+        try {
+            if (buf.getInt() != MAGIC) {
+                throw error("not a compiled configuration");
+            }
+            if (buf.getInt() != VERSION) {
+                throw error("unsupported compiled configuration version");
+            }
+            int n = count(buf);
+            char[] chars = new char[n];
+            buf.asCharBuffer().get(chars);
+            skip(buf, n * Character.BYTES);
+            Alphabet alphabet = new CharacterRange(new String(chars));
+            int numRotors = buf.getInt();
+            int numPawls = buf.getInt();
+            RotorSpec[] specs = new RotorSpec[count(buf)];
+            checkCounts(numRotors, numPawls, specs.length);
+            byte[] notchBits = new byte[(n + Byte.SIZE - 1) / Byte.SIZE];
+            for (int i = 0; i < specs.length; i++) {
+                char[] name = new char[count(buf)];
+                buf.asCharBuffer().get(name);
+                skip(buf, name.length * Character.BYTES);
+                byte type = buf.get();
+                int[] forward = table(buf, n);
+                int[] inverse = table(buf, n);
+                for (int k = 0; k < n; k++) {
+                    if (inverse[forward[k]] != k) {
+                        throw error("bad wiring in compiled configuration");
+                    }
+                }
+                buf.get(notchBits);
+                StringBuilder notches = new StringBuilder();
+                for (int k = 0; k < n; k++) {
+                    if ((notchBits[k / Byte.SIZE] & (1 << k % Byte.SIZE))
+                        != 0) {
+                        notches.append(alphabet.toChar(k));
+                    }
+                }
+                if (type != MOVING && type != FIXED && type != REFLECTOR) {
+                    throw error("bad rotor type in compiled configuration");
+                }
+                specs[i] = new RotorSpec(new String(name),
+                                         new Permutation(forward, inverse,
+                                                         alphabet),
+                                         notches.toString(), type == MOVING,
+                                         type == REFLECTOR);
+            }
+            return new CompiledConfig(alphabet, numRotors, numPawls,
+                                      new RotorRegistry(specs));
+        } catch (BufferUnderflowException | IllegalArgumentException excp) {
+            throw error("compiled configuration truncated");
+        }
+    }
+
+    /** Write me in compiled form to the file named FILENAME. */
+    void write(String fileName) throws IOException {
+        int n = _alphabet.size();
+        checkCounts(_numRotors, _numPawls, _registry.size());
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            for (int k = 0; k < n; k++) {
+                out.writeChar(_alphabet.toChar(k));
+            }
+            out.writeInt(_numRotors);
+            out.writeInt(_numPawls);
+            out.writeInt(_registry.size());
+            for (int i = 0; i < _registry.size(); i++) {
+                RotorSpec spec = _registry.get(i);
+                Permutation perm = spec.permutation();
+                out.writeInt(spec.name().length());
+                out.writeChars(spec.name());
+                out.writeByte(spec.reflecting() ? REFLECTOR
+                              : spec.rotates() ? MOVING : FIXED);
+                int[] forward = perm.forwardTable();
+                int[] inverse = perm.inverseTable();
+                for (int k = 0; k < n; k++) {
+                    if (inverse[forward[k]] != k) {
+                        throw error("wiring of rotor %s is not a permutation",
+                                    spec.name());
+                    }
+                }
+                writeTable(out, forward);
+                writeTable(out, inverse);
+                byte[] notchBits = new byte[(n + Byte.SIZE - 1) / Byte.SIZE];
+                for (int k = 0; k < n; k++) {
+                    if (spec.rotates() && spec.notchAt(k)) {
+                        notchBits[k / Byte.SIZE] |= 1 << k % Byte.SIZE;
+                    }
+                }
+                out.write(notchBits);
+            }
+        }
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return my number of rotor slots. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return my number of pawls. */
+    int numPawls() {
+        return _numPawls;
+    }
+
+    /** Return my available rotors. */
+    RotorRegistry registry() {
+        return _registry;
+    }
+
+    /** Check that a machine with NUMROTORS slots and NUMPAWLS pawls, and
+     *  AVAILABLE rotors to fill its slots, can be built. */
+    private static void checkCounts(int numRotors, int numPawls,
+                                    int available) {
+        if (numPawls <= 0 || numRotors < numPawls) {
+            throw error("bad rotor pawl ratio.");
+        }
+        if (numRotors > available) {
+            throw error("more rotor slots than rotors");
+        }
+    }
+
+    /** Return the next int in BUF, which must be a count of items each
+     *  taking at least one of the bytes remaining. */
+    private static int count(ByteBuffer buf) {
+        int result = buf.getInt();
+        if (result < 0 || result > buf.remaining()) {
+            throw error("compiled configuration truncated");
+        }
+        return result;
+    }
+
+    /** Advance the position of BUF by LEN bytes. */
+    private static void skip(ByteBuffer buf, int len) {
+        buf.position(buf.position() + len);
+    }
+
+    /** Return the next table of N entries in BUF, checking that each is
+     *  less than N. */
+    private static int[] table(ByteBuffer buf, int n) {
+        int[] result = new int[n];
+        for (int k = 0; k < n; k++) {
+            result[k] = n <= BYTE_ENTRIES ? buf.get() & BYTE_MASK
+                : buf.getChar();
+            if (result[k] >= n) {
+                throw error("bad wiring in compiled configuration");
+            }
+        }
+        return result;
+    }
+
+    /** Write TABLE to OUT. */
+    private static void writeTable(DataOutputStream out, int[] table)
+        throws IOException {
+        for (int entry : table) {
+            if (table.length <= BYTE_ENTRIES) {
+                out.writeByte(entry);
+            } else {
+                out.writeChar(entry);
+            }
+        }
+    }
+
+    /** First int of every compiled configuration ("ENGC"). */
+    static final int MAGIC = 0x454e4743;
+
+    /** Version of the format written. */
+    static final int VERSION = 1;
+
+    /** Largest alphabet whose tables are written as bytes. */
+    private static final int BYTE_ENTRIES = 256;
+
+    /** Mask selecting the low eight bits of an int. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Type bytes of moving, fixed and reflecting rotors. */
+    static final byte MOVING = 'M', FIXED = 'N', REFLECTOR = 'R';
+
+    /** My alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Numbers of rotor slots and pawls. */
+    private final int _numRotors, _numPawls;
+
+    /** The available rotors. */
+    private final RotorRegistry _registry;
+
+}
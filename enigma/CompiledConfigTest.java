@@ -0,0 +1,134 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** JUnit tests for the CompiledConfig class.
+ *  @author Aarini
+ */
+public class CompiledConfigTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private ArrayList<Rotor> allRotors = rotors();
+
+    private static final String MSG =
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOODMADEOFSLIDING";
+
+    /** Return MSG converted by a machine with the alphabet, slots, pawls
+     *  and rotors of CONFIG, set up with rotors NAMES. */
+    private String convert(CompiledConfig config, String... names) {
+        Machine machine = new Machine(config.alphabet(), config.numRotors(),
+                                      config.numPawls(), config.registry());
+        machine.insertRotors(names);
+        machine.setRotors("AXLE");
+        machine.setRingSetting("BCDE");
+        machine.setPlugboard(new Permutation(PLUGBOARD,
+                                             config.alphabet()));
+        return machine.convert(MSG + MSG + MSG);
+    }
+
+    /** Return a temporary file that is deleted on exit. */
+    private File tempFile() throws IOException {
+        File result = File.createTempFile("enigma", ".bin");
+        result.deleteOnExit();
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        CompiledConfig config =
+            new CompiledConfig(UPPER, 5, 3, new RotorRegistry(allRotors));
+        File file = tempFile();
+        config.write(file.getPath());
+        assertTrue(CompiledConfig.isCompiled(file.getPath()));
+        CompiledConfig loaded = CompiledConfig.load(file.getPath());
+        assertEquals(5, loaded.numRotors());
+        assertEquals(3, loaded.numPawls());
+        assertEquals(UPPER.size(), loaded.alphabet().size());
+        assertEquals(allRotors.size(), loaded.registry().size());
+        for (int i = 0; i < allRotors.size(); i++) {
+            RotorSpec want = config.registry().get(i),
+                got = loaded.registry().get(i);
+            assertEquals(want.name(), got.name());
+            assertEquals(want.rotates(), got.rotates());
+            assertEquals(want.reflecting(), got.reflecting());
+            assertArrayEquals(want.permutation().forwardTable(),
+                              got.permutation().forwardTable());
+            assertArrayEquals(want.permutation().inverseTable(),
+                              got.permutation().inverseTable());
+            assertEquals(want.permutation().derangement(),
+                         got.permutation().derangement());
+            for (int k = 0; k < UPPER.size(); k++) {
+                assertEquals(want.rotates() && want.notchAt(k),
+                             got.notchAt(k));
+            }
+        }
+        for (String[] names : new String[][] {
+                { "B", "BETA", "III", "IV", "I" },
+                { "B", "BETA", "IV", "II", "III" } }) {
+            assertEquals(convert(config, names), convert(loaded, names));
+        }
+    }
+
+    @Test
+    public void testNotCompiled() throws IOException {
+        File file = tempFile();
+        Files.writeString(file.toPath(), "ABCDEFGHIJKLMNOPQRSTUVWXYZ 5 3\n");
+        assertFalse(CompiledConfig.isCompiled(file.getPath()));
+    }
+
+    @Test
+    public void testBadCounts() throws IOException {
+        File file = tempFile();
+        new CompiledConfig(UPPER, 5, 3, new RotorRegistry(allRotors))
+            .write(file.getPath());
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        int slots = 3 * Integer.BYTES + UPPER.size() * Character.BYTES;
+        int[][] counts = { { 5, 0 }, { 2, 3 }, { 7, 3 }, { -1, -2 } };
+        for (int[] count : counts) {
+            ByteBuffer buf = ByteBuffer.wrap(bytes.clone());
+            buf.putInt(slots, count[0]);
+            buf.putInt(slots + Integer.BYTES, count[1]);
+            try {
+                CompiledConfig.read(buf);
+                fail("read " + count[0] + " slots and " + count[1]
+                     + " pawls");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        File file = tempFile();
+        new CompiledConfig(UPPER, 5, 3, new RotorRegistry(allRotors))
+            .write(file.getPath());
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        for (int len : new int[] { 6, 40, bytes.length - 1 }) {
+            try {
+                CompiledConfig.read(ByteBuffer.wrap(bytes, 0, len));
+                fail("truncated configuration of " + len + " bytes read");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+}
@@ -0,0 +1,461 @@
+package enigma;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** A Machine's rotors and plugboard flattened into primitive arrays, so
+ *  that a keystroke is a short loop over ints with no virtual calls.  It
+ *  produces exactly the same output as the Rotor-based conversion in
+ *  Machine, including its stepping (and double-stepping) rules.
+ *
+ *  Between steps of the slower rotors, everything from the entry of the
+ *  rightmost rotor through the reflector and back out of it is a fixed
+ *  substitution, which is cached in a table that is rebuilt only when one
+ *  of those rotors moves.  The rightmost rotor and plugboard are folded
+ *  into per-offset tables, so a keystroke costs three table reads.
+ *  @author Aarini
+ */
+final class CompiledMachine {
+
+    /** A compiled form of a machine whose slots hold ROTORS (ROTORS[0]
+     *  being the reflector) and whose plugboard is PLUGBOARD.  Rotor
+     *  positions and ring settings are read by load(). */
+    CompiledMachine(Rotor[] rotors, Permutation plugboard) {
+        int n = rotors.length;
+        _size = plugboard.size();
+        _numRotors = n;
+        _forward = new int[n][];
+        _inverse = new int[n][];
+        _notch = new boolean[n][];
+        _rotates = new boolean[n];
+        _pos = new int[n];
+        _offset = new int[n];
+        _atNotch = new boolean[n];
+        _loadPos = new int[n];
+        _loadRings = new int[n];
+        for (int i = 0; i < n; i++) {
+            Permutation perm = rotors[i].permutation();
+            _forward[i] = perm.forwardTable();
+            _inverse[i] = perm.inverseTable();
+            _rotates[i] = rotors[i].rotates();
+            _notch[i] = new boolean[_size];
+            for (int k = 0; k < _size; k++) {
+                _notch[i][k] = rotors[i].notchAt(k);
+            }
+        }
+        _plugboard = plugboard.forwardTable();
+        _inner = new int[_size];
+        if (_size <= MAX_TABLE_SIZE) {
+            int last = n - 1;
+            _fastIn = new int[_size][_size];
+            _fastOut = new int[_size][_size];
+            for (int off = 0; off < _size; off++) {
+                for (int c = 0; c < _size; c++) {
+                    _fastIn[off][c] =
+                        through(_forward[last], off, _plugboard[c]);
+                    _fastOut[off][c] =
+                        _plugboard[through(_inverse[last], off, c)];
+                }
+            }
+        } else {
+            _fastIn = _fastOut = null;
+        }
+    }
+
+    /** A machine sharing PROTO's wiring tables (and its table of inner
+     *  substitutions, if it keeps one), with positions of its own. */
+    private CompiledMachine(CompiledMachine proto) {
+        int n = proto._numRotors;
+        _size = proto._size;
+        _numRotors = n;
+        _forward = proto._forward;
+        _inverse = proto._inverse;
+        _notch = proto._notch;
+        _rotates = proto._rotates;
+        _plugboard = proto._plugboard;
+        _fastIn = proto._fastIn;
+        _fastOut = proto._fastOut;
+        _innerTables = proto._innerTables;
+        _pos = new int[n];
+        _offset = new int[n];
+        _atNotch = new boolean[n];
+        _loadPos = new int[n];
+        _loadRings = new int[n];
+        _inner = new int[_size];
+    }
+
+    /** Return a machine with my wiring, which it shares with me, and with
+     *  all its rotors at offset 0.  The new machine may be used on a
+     *  different thread from me. */
+    CompiledMachine copy() {
+        return new CompiledMachine(this);
+    }
+
+    /** Keep the substitution performed by all rotors but the rightmost for
+     *  each combination of their offsets, once computed, in a table
+     *  shared with my copies, provided that all the tables together would
+     *  hold at most MAX_INNER_ENTRIES entries, so that the memory they may
+     *  take is bounded whatever the size of the alphabet.  Slot 0 must
+     *  hold the reflector, whose offset is always 0. */
+    void shareInnerTables() {
+        if (_fastIn == null) {
+            return;
+        }
+        long count = 1;
+        for (int i = 1; i < _numRotors - 1 && count <= MAX_INNER_ENTRIES;
+             i++) {
+            count *= _size;
+        }
+        if (count * _size <= MAX_INNER_ENTRIES) {
+            _innerTables = new AtomicReferenceArray<>((int) count);
+        }
+    }
+
+    /** Return true iff I keep my inner substitutions in tables shared
+     *  with my copies. */
+    boolean sharesInnerTables() {
+        return _innerTables != null;
+    }
+
+    /** Copy the current positions and ring settings of ROTORS, which must
+     *  be the rotors I was compiled from, into my state. */
+    void load(Rotor[] rotors) {
+        for (int i = 0; i < _numRotors; i++) {
+            _loadPos[i] = rotors[i].setting();
+            _loadRings[i] = rotors[i].ringSetting();
+        }
+        setPositions(_loadPos, _loadRings);
+    }
+
+    /** Copy my rotor positions back into the rotating rotors of ROTORS,
+     *  which must be the rotors I was compiled from. */
+    void store(Rotor[] rotors) {
+        for (int i = 0; i < _numRotors; i++) {
+            if (_rotates[i]) {
+                rotors[i].set(_pos[i]);
+            }
+        }
+    }
+
+    /** Set the rotor in each slot I to setting POSITIONS[I] and ring
+     *  setting RINGS[I]. */
+    void setPositions(int[] positions, int[] rings) {
+        for (int i = 0; i < _numRotors; i++) {
+            int offset = wrap(positions[i] - rings[i]);
+            if (offset != _offset[i] && i < _numRotors - 1) {
+                _innerValid = false;
+            }
+            _pos[i] = positions[i];
+            _offset[i] = offset;
+        }
+    }
+
+    /** Return the current setting less ring setting of the rotor in
+     *  slot I, modulo the alphabet size. */
+    int offset(int i) {
+        return _offset[i];
+    }
+
+    /** Return the settings of all my rotors but the rightmost, encoded as
+     *  a single number (valid only if there are at most e**MAX_LOG_STATES
+     *  such combinations). */
+    long slowState() {
+        return state() / _size;
+    }
+
+    /** Fill TABLES[K] with the substitution I perform, without stepping,
+     *  when the rightmost rotor is at offset K and the others are where
+     *  they are now.  Requires an alphabet of at most MAX_TABLE_SIZE
+     *  characters. */
+    void scramblers(int[][] tables) {
+        if (!_innerValid) {
+            buildInner();
+        }
+        for (int k = 0; k < _size; k++) {
+            for (int c = 0; c < _size; c++) {
+                tables[k][c] = _fastOut[k][_inner[_fastIn[k][c]]];
+            }
+        }
+    }
+
+    /** Return the current setting of the rotor in each slot. */
+    int[] positions() {
+        return _pos.clone();
+    }
+
+    /** Advance the rotors as for N keystrokes, without converting
+     *  anything.  Runs of keystrokes during which only the rightmost rotor
+     *  moves are skipped in one step, and once the machine returns to a
+     *  state it has already passed through during this seek, the remaining
+     *  count is reduced modulo the length of the cycle. */
+    void seek(long n) {
+        int last = _numRotors - 1;
+        HashMap<Long, Long> seen = new HashMap<>();
+        boolean recording = _numRotors * Math.log(_size) < MAX_LOG_STATES;
+        if (_toNotch == null) {
+            _toNotch = notchDistances(_notch[last]);
+        }
+        while (n > 0) {
+            if (recording) {
+                Long before = seen.put(state(), n);
+                if (before != null) {
+                    n %= before - n;
+                    recording = false;
+                    continue;
+                }
+                recording = seen.size() < MAX_SEEK_STATES;
+            }
+            if (!slowStepPending()) {
+                int d = _toNotch[_pos[last]];
+                if (d == _size || !_rotates[last - 1]) {
+                    skip(n % _size);
+                    return;
+                } else if (d >= n) {
+                    skip(n);
+                    return;
+                }
+                skip(d);
+                n -= d;
+            }
+            step();
+            n -= 1;
+        }
+    }
+
+    /** Return a table whose element P is the number of positions a rotor
+     *  at setting P must advance to reach a setting K for which NOTCHES[K]
+     *  is true (or the length of NOTCHES if there is none). */
+    private static int[] notchDistances(boolean[] notches) {
+        int n = notches.length;
+        int[] result = new int[n];
+        int next = -1;
+        for (int k = 2 * n - 1; k >= 0; k--) {
+            if (notches[k % n]) {
+                next = 0;
+            } else if (next >= 0) {
+                next += 1;
+            }
+            if (k < n) {
+                result[k] = next < 0 ? n : next;
+            }
+        }
+        return result;
+    }
+
+    /** Advance the rightmost rotor N (less than my alphabet size)
+     *  positions, leaving the others as they are. */
+    private void skip(long n) {
+        int last = _numRotors - 1;
+        if (_rotates[last]) {
+            _pos[last] = (int) ((_pos[last] + n) % _size);
+            _offset[last] = (int) ((_offset[last] + n) % _size);
+        }
+    }
+
+    /** Return true iff some rotor other than the rightmost would move on
+     *  the next keystroke even if the rightmost were not at a notch. */
+    private boolean slowStepPending() {
+        int last = _numRotors - 1;
+        for (int i = 0; i <= last - 2; i++) {
+            if (_rotates[i] && _notch[i + 1][_pos[i + 1]]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return the positions of all my rotors encoded as a single number
+     *  (valid only if there are at most e**MAX_LOG_STATES states). */
+    private long state() {
+        long result = 0;
+        for (int i = 0; i < _numRotors; i++) {
+            result = result * _size + _pos[i];
+        }
+        return result;
+    }
+
+    /** Returns the result of converting the input character C (as an
+     *  index in the range 0..alphabet size - 1), after first advancing
+     *  the machine. */
+    int convert(int c) {
+        step();
+        if (_fastIn != null) {
+            if (!_innerValid) {
+                buildInner();
+            }
+            int offset = _offset[_numRotors - 1];
+            return _fastOut[offset][_inner[_fastIn[offset][c]]];
+        }
+        int res = _plugboard[c];
+        for (int i = _numRotors - 1; i >= 0; i--) {
+            res = through(_forward[i], _offset[i], res);
+        }
+        for (int i = 1; i < _numRotors; i++) {
+            res = through(_inverse[i], _offset[i], res);
+        }
+        return _plugboard[res];
+    }
+
+    /** Advance the rotors as for one keystroke. */
+    void step() {
+        int last = _numRotors - 1;
+        for (int i = 0; i <= last; i++) {
+            _atNotch[i] = _notch[i][_pos[i]];
+        }
+        for (int i = 0; i <= last - 2; i++) {
+            if (_rotates[i] && _atNotch[i + 1]) {
+                advance(i);
+                if (_rotates[i + 1] && !_atNotch[i + 2]) {
+                    advance(i + 1);
+                }
+            }
+        }
+        if (_atNotch[last]) {
+            advance(last - 1);
+        }
+        advance(last);
+    }
+
+    /** Make _inner the substitution performed by all rotors but the
+     *  rightmost, at their current offsets, taking it from _innerTables if
+     *  it is there. */
+    private void buildInner() {
+        if (_innerTables == null) {
+            fillInner(_inner);
+        } else {
+            int key = 0;
+            for (int i = _numRotors - 2; i >= 1; i--) {
+                key = key * _size + _offset[i];
+            }
+            int[] table = _innerTables.get(key);
+            if (table == null) {
+                table = fillInner(new int[_size]);
+                _innerTables.set(key, table);
+            }
+            _inner = table;
+        }
+        _innerValid = true;
+    }
+
+    /** Fill and return TABLE, which becomes the substitution performed by
+     *  all rotors but the rightmost at their current offsets. */
+    private int[] fillInner(int[] table) {
+        int last = _numRotors - 1;
+        for (int c = 0; c < _size; c++) {
+            int res = c;
+            for (int i = last - 1; i >= 0; i--) {
+                res = through(_forward[i], _offset[i], res);
+            }
+            for (int i = 1; i < last; i++) {
+                res = through(_inverse[i], _offset[i], res);
+            }
+            table[c] = res;
+        }
+        return table;
+    }
+
+    /** Advance the rotor in slot I one position, if it rotates. */
+    private void advance(int i) {
+        if (_rotates[i]) {
+            if (i < _numRotors - 1) {
+                _innerValid = false;
+            }
+            _pos[i] = _pos[i] + 1 == _size ? 0 : _pos[i] + 1;
+            _offset[i] = _offset[i] + 1 == _size ? 0 : _offset[i] + 1;
+        }
+    }
+
+    /** Return the result of passing P through the wiring TABLE of a rotor
+     *  whose position less its ring setting is OFFSET. */
+    private int through(int[] table, int offset, int p) {
+        int k = p + offset;
+        if (k >= _size) {
+            k -= _size;
+        }
+        int r = table[k] - offset;
+        return r < 0 ? r + _size : r;
+    }
+
+    /** Return the value of P modulo my alphabet size. */
+    private int wrap(int p) {
+        int r = p % _size;
+        return r < 0 ? r + _size : r;
+    }
+
+    /** Natural logarithm of the largest number of rotor states for which
+     *  seek() looks for cycles; state() encodes each as a long. */
+    private static final double MAX_LOG_STATES = 62 * Math.log(2);
+
+    /** Most states seek() remembers while looking for a cycle. */
+    private static final int MAX_SEEK_STATES = 1 << 16;
+
+    /** Most entries in all the inner substitutions kept by
+     *  shareInnerTables() (2 MiB of tables), enough for every position
+     *  of three moving rotors over a 26-letter alphabet. */
+    static final int MAX_INNER_ENTRIES = 1 << 19;
+
+    /** Largest alphabet for which per-offset tables are built for the
+     *  rightmost rotor. */
+    private static final int MAX_TABLE_SIZE = 256;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Forward wiring of the rotor in each slot. */
+    private final int[][] _forward;
+
+    /** Inverse wiring of the rotor in each slot. */
+    private final int[][] _inverse;
+
+    /** _notch[i][k] is true iff slot I's rotor has a notch at setting K. */
+    private final boolean[][] _notch;
+
+    /** True for the slots whose rotors rotate. */
+    private final boolean[] _rotates;
+
+    /** Plugboard wiring. */
+    private final int[] _plugboard;
+
+    /** Current setting of the rotor in each slot. */
+    private final int[] _pos;
+
+    /** Current setting less ring setting, modulo the alphabet size. */
+    private final int[] _offset;
+
+    /** _fastIn[k][c] is the result of passing C through the plugboard
+     *  and then the rightmost rotor at offset K (null for alphabets larger
+     *  than MAX_TABLE_SIZE). */
+    private final int[][] _fastIn;
+
+    /** _fastOut[k][c] is the result of passing C back through the
+     *  rightmost rotor at offset K and then the plugboard. */
+    private final int[][] _fastOut;
+
+    /** Substitution performed by every rotor but the rightmost.  When
+     *  _innerTables is in use, this is one of its entries, and is never
+     *  modified. */
+    private int[] _inner;
+
+    /** Entry K is the substitution performed by every rotor but the
+     *  rightmost when the offsets of the rotors in slots 1 up to the one
+     *  before the rightmost, read as digits of K (slot 1 least
+     *  significant), or null if not yet computed.  Null if not kept. */
+    private AtomicReferenceArray<int[]> _innerTables;
+
+    /** True iff _inner matches the current offsets. */
+    private boolean _innerValid;
+
+    /** _toNotch[p] is the distance from setting P of the rightmost rotor
+     *  to its next notch (computed by the first seek()). */
+    private int[] _toNotch;
+
+    /** Scratch space used by load() for positions and ring settings. */
+    private final int[] _loadPos, _loadRings;
+
+    /** Scratch record of which slots were at a notch before a step. */
+    private final boolean[] _atNotch;
+
+}
@@ -0,0 +1,121 @@
+package enigma;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** JDK Flight Recorder events marking the simulator's work, so that it
+ *  can be lined up with garbage collection and I/O in a recording.  All
+ *  are disabled by default; when disabled, the JIT reduces each to a
+ *  check of a constant flag.  Enable them with the usual JFR settings,
+ *  in a .jfc file or on the command line, e.g.
+ *      java -XX:StartFlightRecording:+enigma.Convert#enabled=true,...
+ *
+ *  Each is used as
+ *      Events.Convert event = new Events.Convert();
+ *      event.begin();
+ *      ...
+ *      event.done(...);
+ *  @author Aarini
+ */
+final class Events {
+
+    /** Not instantiable. */
+    private Events() {
+    }
+
+    /** Reading a configuration file. */
+    @Name("enigma.ConfigLoad")
+    @Label("Configuration Load")
+    @Category("Enigma")
+    @Description("Reading and checking a machine configuration")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ConfigLoad extends Event {
+
+        /** End me, having read FILE, which describes ROTORS rotors. */
+        void done(String file, int rotors) {
+            if (shouldCommit()) {
+                configFile = file;
+                this.rotors = rotors;
+                commit();
+            }
+        }
+
+        /** Name of the configuration file. */
+        @Label("Configuration File")
+        private String configFile;
+
+        /** Number of rotors it describes. */
+        @Label("Rotors")
+        private int rotors;
+    }
+
+    /** Applying a settings line: choosing rotors, setting them, and
+     *  building the plugboard. */
+    @Name("enigma.SetUp")
+    @Label("Machine Setup")
+    @Category("Enigma")
+    @Description("Inserting and setting rotors and the plugboard")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class SetUp extends Event {
+
+        /** End me, having applied SETTINGS. */
+        void done(String settings) {
+            if (shouldCommit()) {
+                this.settings = settings;
+                commit();
+            }
+        }
+
+        /** The settings line. */
+        @Label("Settings")
+        private String settings;
+    }
+
+    /** Converting a batch of characters: one message line, or one chunk
+     *  of a message. */
+    @Name("enigma.Convert")
+    @Label("Message Conversion")
+    @Category("Enigma")
+    @Description("Encrypting or decrypting a batch of characters")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Convert extends Event {
+
+        /** End me, having converted CHARS characters. */
+        void done(long chars) {
+            if (shouldCommit()) {
+                characters = chars;
+                commit();
+            }
+        }
+
+        /** Number of characters converted. */
+        @Label("Characters")
+        private long characters;
+    }
+
+    /** Flushing converted output to its destination. */
+    @Name("enigma.Flush")
+    @Label("Output Flush")
+    @Category("Enigma")
+    @Description("Flushing buffered output")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Flush extends Event {
+
+        /** End me. */
+        void done() {
+            if (shouldCommit()) {
+                commit();
+            }
+        }
+    }
+
+}
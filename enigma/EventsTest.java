@@ -0,0 +1,98 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** JUnit tests for the Events class.
+ *  @author Aarini
+ */
+public class EventsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String INPUT =
+        "* B BETA III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+        + "FROM HIS SHOULDER HIAWATHA\n"
+        + "\n"
+        + "TOOK THE CAMERA OF ROSEWOOD\n";
+
+    private static final String[] NAMES = {
+        "enigma.ConfigLoad", "enigma.SetUp", "enigma.Convert", "enigma.Flush"
+    };
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testDisabledByDefault() {
+        Class<?>[] types = {
+            Events.ConfigLoad.class, Events.SetUp.class,
+            Events.Convert.class, Events.Flush.class
+        };
+        for (Class<?> type : types) {
+            assertFalse(type.getName(),
+                        EventType.getEventType(type.asSubclass(
+                                jdk.jfr.Event.class)).isEnabled());
+        }
+    }
+
+    @Test
+    public void testRecorded() throws Exception {
+        Path config = Files.createTempFile("enigma", ".conf");
+        Path dump = Files.createTempFile("enigma", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : NAMES) {
+                recording.enable(name).withoutThreshold();
+            }
+            recording.start();
+            Files.writeString(config, config());
+            StringWriter output = new StringWriter();
+            new Main(Main.configuration(config.toString()),
+                     new BufferedReader(new StringReader(INPUT)), output)
+                .processJob();
+            recording.stop();
+            recording.dump(dump);
+            HashMap<String, Integer> counts = new HashMap<>();
+            long characters = 0;
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+            for (RecordedEvent event : events) {
+                String name = event.getEventType().getName();
+                counts.merge(name, 1, Integer::sum);
+                if (name.equals("enigma.Convert")) {
+                    characters += event.getLong("characters");
+                } else if (name.equals("enigma.ConfigLoad")) {
+                    assertEquals(config.toString(),
+                                 event.getString("configFile"));
+                    assertEquals(6, event.getInt("rotors"));
+                }
+            }
+            assertEquals(Integer.valueOf(1), counts.get("enigma.ConfigLoad"));
+            assertEquals(Integer.valueOf(1), counts.get("enigma.SetUp"));
+            assertEquals(Integer.valueOf(2), counts.get("enigma.Convert"));
+            assertEquals(Integer.valueOf(1), counts.get("enigma.Flush"));
+            assertEquals(46, characters);
+        } finally {
+            Files.deleteIfExists(config);
+            Files.deleteIfExists(dump);
+        }
+    }
+
+}
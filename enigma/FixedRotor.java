@@ -23,4 +23,9 @@ class FixedRotor extends Rotor {
     void advance() {
     }
 
+    @Override
+    Rotor copyWiring() {
+        return new FixedRotor(name(), permutation());
+    }
+
 }
@@ -0,0 +1,497 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static enigma.EnigmaException.*;
+
+/** A search for the machine settings under which a ciphertext decrypts to
+ *  the most plausible plaintext.  The search tries every choice of
+ *  reflector and rotor order that fits the machine's slots, every ring
+ *  setting of the rightmost ringSlots rotors and every setting of the
+ *  rightmost positionSlots rotors (the rest are left at their 0 settings),
+ *  with a fixed plugboard, and keeps the best-scoring candidates.
+ *
+ *  Work is divided by rotor order and ring setting among the threads of a
+ *  ForkJoinPool, which steals work between threads.  Each unit of work
+ *  compiles its rotor order once and then tries each start position by
+ *  resetting that compiled machine's positions, without building a
+ *  Machine; when the vectorized BatchMachine is available, it instead
+ *  tries BATCH_LANES start positions at once in its lanes.  The search
+ *  stops early if a candidate reaches stopScore.
+ *  @author Aarini
+ */
+final class KeySearch {
+
+    /** Scores candidate decryptions; higher scores are more plausible.
+     *  Scorers are shared by all the threads of a search. */
+    interface Scorer {
+        /** Return the score of the first LEN alphabet indices in TEXT. */
+        double score(int[] text, int len);
+    }
+
+    /** A candidate setting and the score of the decryption it gives. */
+    static final class Candidate {
+
+        /** A candidate with rotors named NAMES (reflector first), rotor
+         *  settings POSITIONS and ring settings RINGS (both for the slots
+         *  after the reflector, leftmost first), scoring SCORE. */
+        Candidate(String[] names, String positions, String rings,
+                  double score) {
+            _names = names.clone();
+            _positions = positions;
+            _rings = rings;
+            _score = score;
+        }
+
+        /** Return the names of my rotors, reflector first. */
+        String[] names() {
+            return _names.clone();
+        }
+
+        /** Return my rotor settings. */
+        String positions() {
+            return _positions;
+        }
+
+        /** Return my ring settings. */
+        String rings() {
+            return _rings;
+        }
+
+        /** Return the score of my decryption. */
+        double score() {
+            return _score;
+        }
+
+        /** Return a settings line (without plugboard) for me. */
+        String settingsLine() {
+            return "* " + String.join(" ", _names) + " " + _positions
+                + " " + _rings;
+        }
+
+        @Override
+        public String toString() {
+            return settingsLine() + " [" + _score + "]";
+        }
+
+        /** Names of my rotors. */
+        private final String[] _names;
+
+        /** My rotor and ring settings. */
+        private final String _positions, _rings;
+
+        /** My score. */
+        private final double _score;
+    }
+
+    /** A search among ROTORS for settings of a machine with alphabet
+     *  ALPHA, NUMROTORS slots and NUMPAWLS pawls.  Initially, the settings
+     *  of all moving rotors and none of the ring settings are searched,
+     *  candidates are scored by index of coincidence, and the plugboard is
+     *  empty. */
+    KeySearch(Alphabet alpha, int numRotors, int numPawls,
+              Collection<Rotor> rotors) {
+        _alphabet = alpha;
+        _numRotors = numRotors;
+        _numPawls = numPawls;
+        _rotors = new ArrayList<>(rotors);
+        _scorer = indexOfCoincidence(alpha.size());
+        _plugboard = new Permutation("", alpha);
+        _positionSlots = numPawls;
+        _parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    /** Score candidates with SCORER. */
+    void setScorer(Scorer scorer) {
+        _scorer = scorer;
+    }
+
+    /** Search the settings of the rightmost K rotors. */
+    void setPositionSlots(int k) {
+        if (k < 0 || k >= _numRotors) {
+            throw error("bad number of position slots");
+        }
+        _positionSlots = k;
+    }
+
+    /** Search the ring settings of the rightmost K rotors. */
+    void setRingSlots(int k) {
+        if (k < 0 || k >= _numRotors) {
+            throw error("bad number of ring slots");
+        }
+        _ringSlots = k;
+    }
+
+    /** Use PLUGBOARD for all candidates. */
+    void setPlugboard(Permutation plugboard) {
+        _plugboard = plugboard;
+    }
+
+    /** Keep the best N candidates. */
+    void setResults(int n) {
+        _results = Math.max(1, n);
+    }
+
+    /** Stop searching once a candidate scores at least SCORE. */
+    void setStopScore(double score) {
+        _stopScore = score;
+    }
+
+    /** Search on N threads. */
+    void setParallelism(int n) {
+        _parallelism = Math.max(1, n);
+    }
+
+    /** Return the best candidates for decrypting CIPHERTEXT (all of whose
+     *  characters must be in my alphabet), best first. */
+    List<Candidate> search(String ciphertext) {
+        int[] text = new int[ciphertext.length()];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = _alphabet.toInt(ciphertext.charAt(i));
+        }
+        _orders = orders(_rotors, _numRotors, _numPawls);
+        _best = new PriorityQueue<>(BY_SCORE);
+        _stop = new AtomicBoolean();
+        long units = _orders.size() * power(_alphabet.size(), _ringSlots);
+        ForkJoinPool pool = new ForkJoinPool(_parallelism);
+        try {
+            pool.invoke(new Search(text, 0, units));
+        } finally {
+            pool.shutdown();
+        }
+        ArrayList<Candidate> result = new ArrayList<>(_best);
+        result.sort(BY_SCORE.reversed());
+        return result;
+    }
+
+    /** Return every choice of rotors from ROTORS that fits a machine
+     *  with NUMROTORS slots and NUMPAWLS pawls: a reflector, then
+     *  non-moving rotors, then distinct moving rotors. */
+    static List<Rotor[]> orders(Collection<Rotor> rotors, int numRotors,
+                                int numPawls) {
+        List<Rotor[]> result = new ArrayList<>();
+        orders(new ArrayList<>(rotors), numPawls, new Rotor[numRotors], 0,
+               result);
+        return result;
+    }
+
+    /** Add to RESULT every way of filling slots SLOT and beyond of CHOSEN
+     *  (whose slots before SLOT are already filled) from ROTORS, where
+     *  the last NUMPAWLS slots hold moving rotors. */
+    private static void orders(List<Rotor> rotors, int numPawls,
+                               Rotor[] chosen, int slot,
+                               List<Rotor[]> result) {
+        int numRotors = chosen.length;
+        if (slot == numRotors) {
+            result.add(chosen.clone());
+            return;
+        }
+        for (Rotor rotor : rotors) {
+            boolean fits;
+            if (slot == 0) {
+                fits = rotor.reflecting();
+            } else if (slot < numRotors - numPawls) {
+                fits = !rotor.reflecting() && !rotor.rotates();
+            } else {
+                fits = rotor.rotates();
+            }
+            for (int i = 0; fits && i < slot; i++) {
+                fits = chosen[i] != rotor;
+            }
+            if (fits) {
+                chosen[slot] = rotor;
+                orders(rotors, numPawls, chosen, slot + 1, result);
+            }
+        }
+    }
+
+    /** A range of units of work, each a rotor order and ring setting. */
+    private class Search extends RecursiveAction {
+
+        /** Search units LO to HI (exclusive) for decryptions of TEXT. */
+        Search(int[] text, long lo, long hi) {
+            _text = text;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > 1) {
+                long mid = (_lo + _hi) >>> 1;
+                invokeAll(new Search(_text, _lo, mid),
+                          new Search(_text, mid, _hi));
+                return;
+            }
+            if (_lo == _hi || _stop.get()) {
+                return;
+            }
+            int size = _alphabet.size();
+            long combos = power(size, _ringSlots);
+            Rotor[] order = _orders.get((int) (_lo / combos));
+            int[] rings = digits(_lo % combos, _ringSlots);
+            _names = names(order);
+            _ringLetters = letters(rings);
+            if (BatchMachine.vectorized()) {
+                searchBatched(order, rings);
+            } else {
+                searchCompiled(order, rings);
+            }
+            synchronized (_best) {
+                for (Candidate c : _unitBest) {
+                    _best.add(c);
+                    if (_best.size() > _results) {
+                        _best.poll();
+                    }
+                }
+            }
+        }
+
+        /** Try each start position with the rotors ORDER and ring
+         *  settings RINGS in turn, on one compiled machine. */
+        private void searchCompiled(Rotor[] order, int[] rings) {
+            CompiledMachine engine = new CompiledMachine(order, _plugboard);
+            int[] positions = new int[_numRotors];
+            int[] plain = new int[_text.length];
+            long count = power(_alphabet.size(), _positionSlots);
+            for (long p = 0; p < count && !_stop.get(); p++) {
+                engine.setPositions(positions, rings);
+                for (int i = 0; i < _text.length; i++) {
+                    plain[i] = engine.convert(_text[i]);
+                }
+                consider(positions, _scorer.score(plain, plain.length));
+                increment(positions, _positionSlots);
+            }
+        }
+
+        /** Try the start positions with the rotors ORDER and ring
+         *  settings RINGS up to BATCH_LANES at a time, in the lanes of a
+         *  BatchMachine. */
+        private void searchBatched(Rotor[] order, int[] rings) {
+            long count = power(_alphabet.size(), _positionSlots);
+            int lanes = (int) Math.min(count, BATCH_LANES);
+            BatchMachine batch = BatchMachine.create(order, _plugboard, lanes);
+            int[] positions = new int[_numRotors];
+            int[][] starts = new int[lanes][_numRotors];
+            int len = _text.length;
+            int[] columns = new int[len * lanes];
+            int[] plain = new int[len];
+            for (long p = 0; p < count && !_stop.get(); p += lanes) {
+                int n = (int) Math.min(lanes, count - p);
+                for (int j = 0; j < n; j++) {
+                    System.arraycopy(positions, 0, starts[j], 0, _numRotors);
+                    batch.setPositions(j, positions, rings);
+                    increment(positions, _positionSlots);
+                }
+                for (int k = 0; k < len; k++) {
+                    Arrays.fill(columns, k * lanes, (k + 1) * lanes,
+                                _text[k]);
+                }
+                batch.convert(columns, len);
+                for (int j = 0; j < n; j++) {
+                    for (int k = 0; k < len; k++) {
+                        plain[k] = columns[k * lanes + j];
+                    }
+                    consider(starts[j], _scorer.score(plain, len));
+                }
+            }
+        }
+
+        /** Record that start positions POSITIONS give a decryption
+         *  scoring SCORE, keeping it if it is among my best so far. */
+        private void consider(int[] positions, double score) {
+            if (_unitBest.size() < _results
+                || score > _unitBest.peek().score()) {
+                _unitBest.add(new Candidate(_names, letters(positions),
+                                            _ringLetters, score));
+                if (_unitBest.size() > _results) {
+                    _unitBest.poll();
+                }
+            }
+            if (score >= _stopScore) {
+                _stop.set(true);
+            }
+        }
+
+        /** The ciphertext, as alphabet indices. */
+        private final int[] _text;
+
+        /** The range of units to search. */
+        private final long _lo, _hi;
+
+        /** Names of the rotors of my unit. */
+        private String[] _names;
+
+        /** Ring settings of my unit, as letters. */
+        private String _ringLetters;
+
+        /** The best candidates found in my unit. */
+        private final PriorityQueue<Candidate> _unitBest =
+            new PriorityQueue<>(BY_SCORE);
+    }
+
+    /** Return the settings for each slot given by writing N in base
+     *  alphabet size in the rightmost K slots (the others being 0). */
+    private int[] digits(long n, int k) {
+        int[] result = new int[_numRotors];
+        for (int i = _numRotors - 1; i >= _numRotors - k; i--) {
+            result[i] = (int) (n % _alphabet.size());
+            n /= _alphabet.size();
+        }
+        return result;
+    }
+
+    /** Advance SETTINGS to the next setting of its rightmost K slots,
+     *  counting in base alphabet size. */
+    private void increment(int[] settings, int k) {
+        for (int i = _numRotors - 1; i >= _numRotors - k; i--) {
+            settings[i] += 1;
+            if (settings[i] < _alphabet.size()) {
+                return;
+            }
+            settings[i] = 0;
+        }
+    }
+
+    /** Return the letters for settings SETTINGS of all slots but the
+     *  reflector's. */
+    private String letters(int[] settings) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 1; i < settings.length; i++) {
+            result.append(_alphabet.toChar(settings[i]));
+        }
+        return result.toString();
+    }
+
+    /** Return the names of the rotors in ORDER. */
+    static String[] names(Rotor[] order) {
+        String[] result = new String[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = order[i].name();
+        }
+        return result;
+    }
+
+    /** Return BASE to the power K. */
+    static long power(int base, int k) {
+        long result = 1;
+        for (int i = 0; i < k; i++) {
+            result *= base;
+        }
+        return result;
+    }
+
+    /** Return a scorer giving the index of coincidence of a text over an
+     *  alphabet of SIZE characters: the chance that two of its characters
+     *  chosen at random are equal. */
+    static Scorer indexOfCoincidence(int size) {
+        ThreadLocal<int[]> counts =
+            ThreadLocal.withInitial(() -> new int[size]);
+        return (text, len) -> {
+            int[] count = counts.get();
+            Arrays.fill(count, 0);
+            for (int i = 0; i < len; i++) {
+                count[text[i]] += 1;
+            }
+            long sum = 0;
+            for (int c : count) {
+                sum += (long) c * (c - 1);
+            }
+            return len < 2 ? 0 : (double) sum / ((long) len * (len - 1));
+        };
+    }
+
+    /** Return a scorer giving the log-likelihood of a text under the
+     *  N-gram statistics of CORPUS (characters of CORPUS not in ALPHA are
+     *  ignored), using add-one smoothing. */
+    static Scorer ngrams(Alphabet alpha, int n, String corpus) {
+        int size = alpha.size();
+        int tableSize = (int) power(size, n);
+        int[] counts = new int[tableSize];
+        int index = 0, seen = 0;
+        long total = 0;
+        for (int i = 0; i < corpus.length(); i++) {
+            if (!alpha.contains(corpus.charAt(i))) {
+                continue;
+            }
+            int c = alpha.toInt(corpus.charAt(i));
+            index = (index * size + c) % tableSize;
+            seen += 1;
+            if (seen >= n) {
+                counts[index] += 1;
+                total += 1;
+            }
+        }
+        double[] logProb = new double[tableSize];
+        for (int i = 0; i < tableSize; i++) {
+            logProb[i] = Math.log((counts[i] + 1.0) / (total + tableSize));
+        }
+        return (text, len) -> {
+            double score = 0;
+            int k = 0;
+            for (int i = 0; i < len; i++) {
+                k = (k * size + text[i]) % tableSize;
+                if (i >= n - 1) {
+                    score += logProb[k];
+                }
+            }
+            return score;
+        };
+    }
+
+    /** Most start positions tried at once, in the lanes of a
+     *  BatchMachine. */
+    private static final int BATCH_LANES = 256;
+
+    /** Orders candidates by increasing score. */
+    private static final Comparator<Candidate> BY_SCORE =
+        Comparator.comparingDouble(Candidate::score);
+
+    /** The machine's alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Number of rotor slots and pawls. */
+    private final int _numRotors, _numPawls;
+
+    /** The available rotors (used only for their wiring). */
+    private final List<Rotor> _rotors;
+
+    /** Scorer for candidate decryptions. */
+    private Scorer _scorer;
+
+    /** Plugboard used for all candidates. */
+    private Permutation _plugboard;
+
+    /** Number of rightmost slots whose settings are searched. */
+    private int _positionSlots;
+
+    /** Number of rightmost slots whose ring settings are searched. */
+    private int _ringSlots;
+
+    /** Number of candidates kept. */
+    private int _results = 1;
+
+    /** Score at which the search stops. */
+    private double _stopScore = Double.POSITIVE_INFINITY;
+
+    /** Number of threads searching. */
+    private int _parallelism;
+
+    /** Every rotor order that fits the slots, during a search. */
+    private List<Rotor[]> _orders;
+
+    /** Best candidates found so far, lowest score first. */
+    private PriorityQueue<Candidate> _best;
+
+    /** Set when a candidate reaches _stopScore. */
+    private AtomicBoolean _stop;
+
+}
@@ -0,0 +1,81 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** JUnit tests for the KeySearch class.
+ *  @author Aarini
+ */
+public class KeySearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private ArrayList<Rotor> allRotors = rotors();
+
+    private static final String PLAIN =
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOODMADEOFSLIDING"
+        + "FOLDINGROSEWOODNEATLYPUTITALLTOGETHERINITSCASEITLAYCOMPACTLY"
+        + "FOLDEDINTONEARLYNOTHINGBUTHEOPENEDOUTTHEHINGESPUSHEDANDPULLED"
+        + "THEJOINTSANDHINGESTILLITLOOKEDALLSQUARESANDOBLONGSLIKEACOMPLI"
+        + "CATEDFIGUREINTHESECONDBOOKOFEUCLID";
+
+    /** Return PLAIN encrypted with the rotors named in NAMES and the
+     *  settings SETTINGS. */
+    private String encrypt(String[] names, String settings) {
+        Machine machine = new Machine(UPPER, 5, 3, rotors());
+        machine.insertRotors(names);
+        machine.setRotors(settings);
+        machine.setPlugboard(new Permutation("", UPPER));
+        return machine.convert(PLAIN);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testFindsSettings() {
+        String cipher = encrypt(new String[] {"B", "BETA", "III", "IV", "I"},
+                                "AAKX");
+        KeySearch search = new KeySearch(UPPER, 5, 3, allRotors);
+        search.setPositionSlots(2);
+        search.setResults(3);
+        search.setParallelism(2);
+        List<KeySearch.Candidate> best = search.search(cipher);
+        assertEquals(3, best.size());
+        assertEquals("* B BETA III IV I AAKX AAAA", best.get(0).settingsLine());
+        assertTrue(best.get(0).score() > best.get(1).score());
+    }
+
+    @Test
+    public void testNgramScorer() {
+        String cipher = encrypt(new String[] {"B", "BETA", "II", "I", "IV"},
+                                "AAMC");
+        KeySearch search = new KeySearch(UPPER, 5, 3, allRotors);
+        search.setPositionSlots(2);
+        search.setScorer(KeySearch.ngrams(UPPER, 3, PLAIN));
+        List<KeySearch.Candidate> best = search.search(cipher);
+        assertEquals(1, best.size());
+        assertEquals("* B BETA II I IV AAMC AAAA", best.get(0).settingsLine());
+    }
+
+    @Test
+    public void testStopScore() {
+        String cipher = encrypt(new String[] {"B", "BETA", "I", "II", "III"},
+                                "AADD");
+        KeySearch search = new KeySearch(UPPER, 5, 3, allRotors);
+        search.setPositionSlots(2);
+        search.setStopScore(0.06);
+        List<KeySearch.Candidate> best = search.search(cipher);
+        assertTrue(best.get(0).score() >= 0.06);
+    }
+
+}
@@ -1,5 +1,7 @@
 package enigma;
 
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
 import java.util.Collection;
 
 /** Class that represents a complete enigma machine.
@@ -9,14 +11,25 @@ class Machine {
 
     /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
      *  and 0 <= PAWLS < NUMROTORS pawls.  ALLROTORS contains all the
-     *  available rotors. */
+     *  available rotors, which are used only for their definitions and
+     *  are never changed by the machine. */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) {
+        this(alpha, numRotors, pawls, new RotorRegistry(allRotors));
+    }
+
+    /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
+     *  and 0 <= PAWLS < NUMROTORS pawls, whose available rotors are
+     *  those in ALLROTORS.  Any number of machines may share ALLROTORS. */
+    Machine(Alphabet alpha, int numRotors, int pawls,
+            RotorRegistry allRotors) {
         _alphabet = alpha;
         _numRotor = numRotors;
         _pawl = pawls;
-        _allRotors = allRotors.toArray();
+        _allRotors = allRotors;
         _rotors = new Rotor[numRotors];
+        _rotorIndex = new int[numRotors];
+        _rotorAtNotch = new boolean[numRotors];
     }
 
     /** Return the number of rotor slots I have. */
@@ -47,21 +60,22 @@ class Machine {
         }
     }
 
-    /** Set my rotor slots to the rotors named ROTORS from my set of
-     *  available rotors (ROTORS[0] names the reflector).
+    /** Set my rotor slots to new rotors made from the available rotors
+     *  named ROTORS (ROTORS[0] names the reflector).
      *  Initially, all rotors are set at their 0 setting. */
     void insertRotors(String[] rotors) {
-        for (int i = 0; i < rotors.length; i++) {
-            for (Object j : _allRotors) {
-                if (rotors[i].equals(
-                        ((Rotor) j).name())) {
-                    _rotors[i] = (Rotor) j;
-                }
-            }
-        }
         if (_rotors.length != rotors.length) {
             throw new EnigmaException("wrongly named rotors");
         }
+        _engine = null;
+        for (int i = 0; i < rotors.length; i++) {
+            int j = _allRotors.indexOf(rotors[i]);
+            if (j < 0) {
+                throw new EnigmaException("wrongly named rotors");
+            }
+            _rotors[i] = _allRotors.get(j).newRotor();
+            _rotorIndex[i] = j;
+        }
     }
 
     /** Set my rotors according to SETTING, which must be a string of
@@ -87,16 +101,155 @@ class Machine {
 
     /** Set the plugboard to PLUGBOARD. */
     void setPlugboard(Permutation plugboard) {
+        _engine = null;
         _plugboard = plugboard;
     }
 
+    /** Return a snapshot of my current state. */
+    MachineState state() {
+        MachineState result = new MachineState(_numRotor);
+        save(result);
+        return result;
+    }
+
+    /** Record my current state in STATE, which must be for a machine with
+     *  as many slots as I have. */
+    void save(MachineState state) {
+        for (int i = 0; i < _numRotor; i++) {
+            state.set(i, _rotorIndex[i], _rotors[i].setting(),
+                      _rotors[i].ringSetting());
+        }
+        state.set(_plugboard, _ringSetting);
+    }
+
+    /** Return to STATE, which must have been saved from me or from a
+     *  machine with the same available rotors.  Only my rotor settings
+     *  change if the same rotors and plugboard are in place. */
+    void restore(MachineState state) {
+        if (state.numRotors() != _numRotor) {
+            throw new EnigmaException("state is for a different machine");
+        }
+        for (int i = 0; i < _numRotor; i++) {
+            if (_rotors[i] == null || _rotorIndex[i] != state.rotor(i)) {
+                _rotorIndex[i] = state.rotor(i);
+                _rotors[i] = _allRotors.get(state.rotor(i)).newRotor();
+                _engine = null;
+            }
+            if (i > 0) {
+                _rotors[i].set(state.position(i));
+                _rotors[i].setRingSetting(state.ring(i));
+            }
+        }
+        if (_plugboard != state.plugboard()) {
+            _plugboard = state.plugboard();
+            _engine = null;
+        }
+        _ringSetting = state.ringSetting();
+    }
+
+    /** Return a machine with my available rotors and my state, whose
+     *  rotors share my rotors' wiring but not their settings, so that it
+     *  and I may be used independently (and on different threads). */
+    Machine copy() {
+        Machine result = new Machine(_alphabet, _numRotor, _pawl,
+                                     _allRotors);
+        result._compiled = _compiled;
+        result._cache = _cache;
+        for (int i = 0; i < _numRotor; i++) {
+            if (_rotors[i] != null) {
+                result._rotors[i] = _rotors[i].copy();
+                result._rotorIndex[i] = _rotorIndex[i];
+            }
+        }
+        result._plugboard = _plugboard;
+        result._ringSetting = _ringSetting;
+        return result;
+    }
+
+    /** Use the compiled engine for conversions iff COMPILED; otherwise
+     *  convert by calling on each of my Rotors in turn. */
+    void setCompiled(boolean compiled) {
+        _compiled = compiled;
+        _engine = null;
+    }
+
+    /** Take compiled engines from CACHE (which must be used only with
+     *  machines sharing my available rotors), or build my own if CACHE is
+     *  null. */
+    void setCache(SubstitutionCache cache) {
+        _cache = cache;
+        _engine = null;
+    }
+
+    /** Return true iff I convert using the compiled engine. */
+    boolean compiled() {
+        return _compiled;
+    }
+
+    /** Return my compiled engine, loaded with the current positions of my
+     *  rotors, (re)building it if my configuration has changed. */
+    private CompiledMachine engine() {
+        if (_engine == null) {
+            if (_plugboard == null) {
+                _plugboard = new Permutation("", _alphabet);
+            }
+            if (_cache == null) {
+                _engine = new CompiledMachine(_rotors, _plugboard);
+            } else {
+                RotorSpec[] specs = new RotorSpec[_numRotor];
+                for (int i = 0; i < _numRotor; i++) {
+                    specs[i] = _allRotors.get(_rotorIndex[i]);
+                }
+                _engine = _cache.engine(specs, _rotors, _plugboard);
+            }
+        }
+        _engine.load(_rotors);
+        return _engine;
+    }
+
+    /** Advance my rotors to where they would be after converting N more
+     *  characters, without stepping through the intermediate positions
+     *  one at a time. */
+    void seek(long n) {
+        if (n < 0) {
+            throw new EnigmaException("cannot seek backwards");
+        }
+        CompiledMachine engine = engine();
+        engine.seek(n);
+        engine.store(_rotors);
+    }
+
+    /** Return the settings the rotors in my slots would have after
+     *  converting N more characters, leaving my state unchanged. */
+    int[] positionAfter(long n) {
+        if (n < 0) {
+            throw new EnigmaException("cannot seek backwards");
+        }
+        CompiledMachine engine = engine();
+        engine.seek(n);
+        int[] result = engine.positions();
+        engine.load(_rotors);
+        return result;
+    }
+
     /** Returns the result of converting the input character C (as an
      *  index in the range 0..alphabet size - 1), after first advancing
 
      *  the machine. */
     int convert(int c) {
+        if (_compiled) {
+            CompiledMachine engine = engine();
+            int res = engine.convert(c);
+            engine.store(_rotors);
+            return res;
+        }
+        return convertRotors(c);
+    }
 
-        Boolean[] rotorAtNotch = new Boolean[_rotors.length];
+    /** Returns the result of converting the input character C as for
+     *  convert(int), passing it through each of my Rotor objects. */
+    private int convertRotors(int c) {
+        boolean[] rotorAtNotch = _rotorAtNotch;
 
         for (int i = 0; i < _rotors.length; i++) {
             rotorAtNotch[i] = _rotors[i].atNotch();
@@ -134,31 +287,122 @@ class Machine {
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        if (msg.isEmpty() || msg.equals("")) {
+        if (msg.isEmpty()) {
             return "";
         }
-        StringBuilder result = new StringBuilder();
-        for (int i = 0; i < msg.length(); i++) {
-            int ch = _alphabet.toInt(msg.charAt(i));
-            char res = _alphabet.toChar(convert(ch));
-            result.append(String.valueOf(res));
+        char[] result = msg.toCharArray();
+        convert(result, 0, result.length, result, 0);
+        return new String(result);
+    }
+
+    /** Encode or decode the LEN characters of IN starting at OFF, storing
+     *  the results in OUT starting at OUTOFF and updating the state of the
+     *  rotors accordingly.  IN and OUT may be the same array, in which case
+     *  the message is converted in place. */
+    void convert(char[] in, int off, int len, char[] out, int outOff) {
+        if (_compiled && len > 0) {
+            CompiledMachine engine = engine();
+            try {
+                for (int i = 0; i < len; i++) {
+                    out[outOff + i] = _alphabet.toChar(
+                            engine.convert(_alphabet.toInt(in[off + i])));
+                }
+            } finally {
+                engine.store(_rotors);
+            }
+        } else {
+            for (int i = 0; i < len; i++) {
+                out[outOff + i] =
+                    _alphabet.toChar(convert(_alphabet.toInt(in[off + i])));
+            }
         }
-        return result.toString();
     }
 
+    /** Encode or decode the LEN bytes of IN starting at OFF, each the code
+     *  of an ASCII character, storing the codes of the results in OUT
+     *  starting at OUTOFF and updating the state of the rotors accordingly.
+     *  IN and OUT may be the same array.  My alphabet must be all ASCII
+     *  (see Alphabet.byteTable()). */
+    void convert(byte[] in, int off, int len, byte[] out, int outOff) {
+        if (_byteIndex == null) {
+            _byteIndex = _alphabet.byteTable();
+            if (_byteIndex == null) {
+                throw new EnigmaException("alphabet is not ASCII");
+            }
+            byte[] chars = new byte[_alphabet.size()];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (byte) _alphabet.toChar(i);
+            }
+            _indexByte = chars;
+        }
+        int[] index = _byteIndex;
+        byte[] chars = _indexByte;
+        if (_compiled && len > 0) {
+            CompiledMachine engine = engine();
+            try {
+                for (int i = 0; i < len; i++) {
+                    int c = index[in[off + i] & BYTE_MASK];
+                    if (c < 0) {
+                        throw new EnigmaException("character out of range");
+                    }
+                    out[outOff + i] = chars[engine.convert(c)];
+                }
+            } finally {
+                engine.store(_rotors);
+            }
+        } else {
+            for (int i = 0; i < len; i++) {
+                int c = index[in[off + i] & BYTE_MASK];
+                if (c < 0) {
+                    throw new EnigmaException("character out of range");
+                }
+                out[outOff + i] = chars[convert(c)];
+            }
+        }
+    }
 
+    /** Encode or decode the remaining characters of IN into OUT, which
+     *  must have at least IN.remaining() characters of space left,
+     *  advancing the positions of both buffers. */
+    void convert(CharBuffer in, CharBuffer out) {
+        int len = in.remaining();
+        if (out.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+        if (in.hasArray() && out.hasArray()) {
+            convert(in.array(), in.arrayOffset() + in.position(), len,
+                    out.array(), out.arrayOffset() + out.position());
+            in.position(in.position() + len);
+            out.position(out.position() + len);
+        } else {
+            while (in.hasRemaining()) {
+                out.put(_alphabet.toChar(convert(_alphabet.toInt(in.get()))));
+            }
+        }
+    }
 
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
 
+    /** Index of the character with each byte code, or -1, once
+     *  convert(byte[], ...) has been called (see Alphabet.byteTable()). */
+    private int[] _byteIndex;
+
+    /** Byte code of each character, once convert(byte[], ...) has been
+     *  called. */
+    private byte[] _indexByte;
+
+    /** Mask selecting the unsigned value of a byte. */
+    private static final int BYTE_MASK = 0xff;
+
     /** total no. of rotors. */
     private final int _numRotor;
 
     /** total no. of pawls. */
     private final int _pawl;
 
-    /** object array of all rotors. */
-    private Object[] _allRotors;
+    /** Definitions of all available rotors. */
+    private final RotorRegistry _allRotors;
 
     /** initial plugboard. */
     private Permutation _plugboard;
@@ -166,7 +410,24 @@ class Machine {
     /** array of rotors formatting the machine. */
     private Rotor[] _rotors;
 
+    /** Index in _allRotors of the rotor in each slot. */
+    private final int[] _rotorIndex;
+
     /** Ring setting of the rotors. */
     private String _ringSetting;
 
+    /** True iff conversions use the compiled engine. */
+    private boolean _compiled = true;
+
+    /** Source of compiled engines, or null. */
+    private SubstitutionCache _cache;
+
+    /** Compiled form of my current rotors and plugboard, or null if it
+     *  must be rebuilt. */
+    private CompiledMachine _engine;
+
+    /** Scratch space used by convert(int) to record which rotors were at
+     *  a notch before the machine advanced. */
+    private final boolean[] _rotorAtNotch;
+
 }
@@ -0,0 +1,81 @@
+package enigma;
+
+/** A snapshot of a Machine's state: which of its available rotors are in
+ *  its slots, their settings and ring settings, and its plugboard.  It is
+ *  filled by Machine.save and applied by Machine.restore, each in time
+ *  proportional to the number of rotor slots, and may be reused for any
+ *  number of snapshots of machines with the same number of slots.
+ *  @author Aarini
+ */
+final class MachineState {
+
+    /** An empty state for a machine with NUMROTORS slots. */
+    MachineState(int numRotors) {
+        _rotors = new int[numRotors];
+        _positions = new int[numRotors];
+        _rings = new int[numRotors];
+    }
+
+    /** Return the number of rotor slots I describe. */
+    int numRotors() {
+        return _rotors.length;
+    }
+
+    /** Return the index, among the machine's available rotors, of the
+     *  rotor in slot I. */
+    int rotor(int i) {
+        return _rotors[i];
+    }
+
+    /** Return the setting of the rotor in slot I. */
+    int position(int i) {
+        return _positions[i];
+    }
+
+    /** Return the ring setting of the rotor in slot I. */
+    int ring(int i) {
+        return _rings[i];
+    }
+
+    /** Return the plugboard. */
+    Permutation plugboard() {
+        return _plugboard;
+    }
+
+    /** Return the ring setting string last given to the machine, or null
+     *  if there was none. */
+    String ringSetting() {
+        return _ringSetting;
+    }
+
+    /** Record that slot I holds available rotor ROTOR at setting POSITION
+     *  with ring setting RING. */
+    void set(int i, int rotor, int position, int ring) {
+        _rotors[i] = rotor;
+        _positions[i] = position;
+        _rings[i] = ring;
+    }
+
+    /** Record that the machine's plugboard is PLUGBOARD and its ring
+     *  setting string RINGSETTING. */
+    void set(Permutation plugboard, String ringSetting) {
+        _plugboard = plugboard;
+        _ringSetting = ringSetting;
+    }
+
+    /** Indices of the rotors in each slot. */
+    private final int[] _rotors;
+
+    /** Setting of the rotor in each slot. */
+    private final int[] _positions;
+
+    /** Ring setting of the rotor in each slot. */
+    private final int[] _rings;
+
+    /** The plugboard. */
+    private Permutation _plugboard;
+
+    /** The ring setting string. */
+    private String _ringSetting;
+
+}
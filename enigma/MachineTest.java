@@ -1,5 +1,6 @@
 package enigma;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -22,25 +23,7 @@ public class MachineTest {
 
     /* ***** TESTING UTILITIES ***** */
 
-    private ArrayList<Rotor> allRotors = new ArrayList<>(Arrays.asList(
-            new Reflector("B", new Permutation(
-                    "(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) "
-                            + "(MP) (RX) (SZ) (TV)", UPPER)),
-            new FixedRotor("BETA", new Permutation(
-                    "(ALBEVFCYODJWUGNMQTZSKPR) (HIX)",
-                    UPPER)),
-            new MovingRotor("I", new Permutation(
-                    "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) "
-                            + "(JZ) (S)", UPPER), "Q"),
-            new MovingRotor("II", new Permutation(
-                    "(FIXVYOMW) (CDKLHUP) (ESZ) (BJ) "
-                            + "(GR) (NT) (A) (Q)", UPPER), "E"),
-            new MovingRotor("III", new Permutation(
-                    "(ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)",
-                    UPPER), "V"),
-            new MovingRotor("IV", new Permutation(
-                    "(AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)",
-                    UPPER), "J")));
+    private ArrayList<Rotor> allRotors = rotors();
 
     private Machine machine;
     private String[] newRotors = {"B", "BETA", "III", "IV", "I"};
@@ -60,8 +43,10 @@ public class MachineTest {
         setMachine(UPPER, 5, 3, allRotors);
         machine.insertRotors(newRotors);
         assertEquals("Wrong rotor placement",
-                allRotors.get(0), machine.rotors()[0]);
+                allRotors.get(0).name(), machine.rotors()[0].name());
         assertEquals("Wrong rotor placement",
+                allRotors.get(4).name(), machine.rotors()[2].name());
+        assertNotSame("Slot shares state with available rotor",
                 allRotors.get(4), machine.rotors()[2]);
     }
 
@@ -111,4 +96,138 @@ public class MachineTest {
         assertEquals("Wrong convert",
                 "FROM", machine.convert("KGHX"));
     }
+
+    @Test
+    public void testConvertBulk() {
+        setMachine(UPPER, 5, 3, allRotors);
+        machine.insertRotors(newRotors);
+        machine.setRotors("ABCD");
+        machine.setPlugboard(new Permutation(
+                "(HQ) (EX) (IP) (TR) (BY)", UPPER));
+        char[] buf = "xxFROMxx".toCharArray();
+        machine.convert(buf, 2, 4, buf, 2);
+        assertEquals("Wrong in-place convert", "xxKGHXxx", new String(buf));
+        machine.setRotors("ABCD");
+        CharBuffer in = CharBuffer.wrap("KGHX");
+        CharBuffer out = CharBuffer.allocate(4);
+        machine.convert(in, out);
+        assertFalse(in.hasRemaining());
+        assertEquals("Wrong buffer convert", "FROM", out.flip().toString());
+    }
+
+    @Test
+    public void testConvertBytes() {
+        for (int mode = 0; mode < 2; mode += 1) {
+            setMachine(UPPER, 5, 3, allRotors);
+            machine.setCompiled(mode == 0);
+            machine.insertRotors(newRotors);
+            machine.setRotors("ABCD");
+            machine.setPlugboard(new Permutation(
+                    "(HQ) (EX) (IP) (TR) (BY)", UPPER));
+            byte[] buf = "xxFROMxx".getBytes();
+            machine.convert(buf, 2, 4, buf, 2);
+            assertEquals("Wrong byte convert", "xxKGHXxx", new String(buf));
+            try {
+                machine.convert(buf, 0, 4, buf, 0);
+                fail("Converted a byte not in the alphabet");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test
+    public void testCompiledMatchesRotors() {
+        String msg = "THEQUICKBROWNFOXJUMPSOVERTHELAZYDOG";
+        for (int k = 0; k < 8; k += 1) {
+            msg = msg + msg;
+        }
+        String[] results = new String[2];
+        for (int mode = 0; mode < 2; mode += 1) {
+            setMachine(UPPER, 5, 3, allRotors);
+            machine.setCompiled(mode == 0);
+            machine.insertRotors(newRotors);
+            machine.setRotors("AQDU");
+            machine.setRingSetting("BCDE");
+            machine.setPlugboard(new Permutation("(AQ) (EP) (ZY)", UPPER));
+            results[mode] = machine.convert(msg);
+            results[mode] += machine.rotors()[2].setting() + ","
+                    + machine.rotors()[3].setting() + ","
+                    + machine.rotors()[4].setting();
+        }
+        assertEquals("Compiled engine differs", results[1], results[0]);
+    }
+
+    @Test
+    public void testPositionAfter() {
+        setMachine(UPPER, 5, 3, allRotors);
+        machine.insertRotors(newRotors);
+        machine.setPlugboard(new Permutation("", UPPER));
+        long[] counts = {0, 1, 7, 26, 27, 650, 677, 16900, 16913, 40001};
+        for (String start : new String[] {"AUIP", "ZVJQ", "AAAA"}) {
+            for (long n : counts) {
+                machine.setRotors(start);
+                char[] msg = new char[(int) n];
+                Arrays.fill(msg, 'A');
+                machine.convert(msg, 0, msg.length, msg, 0);
+                int[] expected = new int[5];
+                for (int i = 0; i < 5; i += 1) {
+                    expected[i] = machine.rotors()[i].setting();
+                }
+                machine.setRotors(start);
+                assertArrayEquals("positionAfter(" + n + ") from " + start,
+                        expected, machine.positionAfter(n));
+                assertEquals("positionAfter changed state",
+                        UPPER.toInt(start.charAt(3)),
+                        machine.rotors()[4].setting());
+                machine.seek(n);
+                for (int i = 0; i < 5; i += 1) {
+                    assertEquals("seek(" + n + ") slot " + i, expected[i],
+                            machine.rotors()[i].setting());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSaveRestore() {
+        setMachine(UPPER, 5, 3, allRotors);
+        machine.insertRotors(newRotors);
+        machine.setRotors("AXLE");
+        machine.setRingSetting("BCDE");
+        machine.setPlugboard(new Permutation("(YF) (ZH)", UPPER));
+        MachineState state = machine.state();
+        String first = machine.convert("FROMHISSHOULDER");
+        machine.insertRotors(new String[] {"B", "BETA", "I", "II", "III"});
+        machine.setRotors("QQQQ");
+        machine.setPlugboard(new Permutation("", UPPER));
+        machine.convert("HIAWATHA");
+        machine.restore(state);
+        assertEquals("BCDE", machine.ringSetting());
+        assertEquals("Wrong convert after restore",
+                first, machine.convert("FROMHISSHOULDER"));
+        machine.save(state);
+        String second = machine.convert("TOOK");
+        machine.restore(state);
+        assertEquals(second, machine.convert("TOOK"));
+    }
+
+    @Test
+    public void testCopy() {
+        setMachine(UPPER, 5, 3, allRotors);
+        machine.insertRotors(newRotors);
+        machine.setRotors("AXLE");
+        machine.setPlugboard(new Permutation("(YF) (ZH)", UPPER));
+        Machine copy = machine.copy();
+        String expected = machine.convert("FROMHISSHOULDER");
+        assertEquals("Copy did not start in my state",
+                expected, copy.convert("FROMHISSHOULDER"));
+        copy.insertRotors(new String[] {"B", "BETA", "I", "II", "III"});
+        copy.setRotors("QQQQ");
+        assertEquals("Copy shares settings", UPPER.toInt('E') + 15,
+                machine.rotors()[4].setting());
+        assertSame("Copy does not share wiring",
+                machine.rotors()[1].permutation(),
+                copy.rotors()[1].permutation());
+    }
 }
@@ -1,14 +1,36 @@
 package enigma;
 
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Future;
 
 import static enigma.EnigmaException.*;
 
@@ -25,7 +47,52 @@ public final class Main {
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
      *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  otherwise with code 1.
+     *
+     *  Arguments beginning with "--" are options and may appear anywhere:
+     *    --engine=compiled  convert with the flattened CompiledMachine
+     *                       (the default).
+     *    --engine=object    convert by calling each Rotor in turn.
+     *    --flush-interval=N flush output after every N input lines, rather
+     *                       than only when it fills a buffer or at the end
+     *                       (0, the default).
+     *    --compile-config   instead of converting messages, read the
+     *                       configuration file ARGS[0] and write it in the
+     *                       compact binary form described in CompiledConfig
+     *                       to the file ARGS[1].  Main accepts such a file
+     *                       wherever it accepts a configuration file, and
+     *                       loads it without parsing.
+     *    --mmap             memory-map the input and output files, which
+     *                       must both be given.  Used only when every
+     *                       character of the alphabet is ASCII; otherwise
+     *                       the files are read and written as streams.
+     *    --parallel[=N]     convert the messages following different
+     *                       settings lines concurrently, on N threads
+     *                       (by default, one per available processor).
+     *    --chunk-size=N     when converting in parallel, also split any
+     *                       message longer than N characters into chunks
+     *                       of N characters that are converted concurrently,
+     *                       each starting from the rotor positions reached
+     *                       after the preceding characters (implies
+     *                       --parallel).
+     *    --cache-size=N     keep the compiled machines for the N most
+     *                       recently used rotor orders and plugboards, so
+     *                       that settings lines repeating them are cheap
+     *                       (16 by default; 0 turns the cache off).
+     *    --settings-cache-size=N
+     *                       keep the machine states set up by the N most
+     *                       recently used settings lines, so that a
+     *                       repeated settings line is a lookup (64 by
+     *                       default; 0 turns the cache off).
+     *    --cache-stats      print the caches' sizes and hit, miss and
+     *                       eviction counts on the standard error at the
+     *                       end.
+     *    --metrics          print counts of the characters, message lines
+     *                       and settings lines processed, the time spent in
+     *                       each part of the work and message line latency
+     *                       percentiles on the standard error at the end.
+     *    --jmx              make the same figures available over JMX while
+     *                       running, as the MBean enigma:type=Metrics. */
     public static void main(String... args) {
         try {
             new Main(args).process();
@@ -38,75 +105,745 @@ public final class Main {
 
     /** Check ARGS and open the necessary files (see comment on main). */
     Main(String[] args) {
+        args = options(args);
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
-        _config = getInput(args[0]);
+        _config = getConfig(args[0]);
 
-        if (args.length > 1) {
-            _input = getInput(args[1]);
-        } else {
-            _input = new Scanner(System.in);
+        if (_compileConfig) {
+            if (args.length != 2) {
+                throw error("--compile-config requires a configuration file"
+                            + " and an output file");
+            }
+            _outputName = args[1];
+            return;
         }
 
-        if (args.length > 2) {
-            _output = getOutput(args[2]);
-        } else {
-            _output = System.out;
+        if (_mapped && _threads > 0) {
+            throw error("--mmap and --parallel cannot be combined");
+        }
+        if (_mapped) {
+            if (args.length != 3) {
+                throw error("--mmap requires input and output files");
+            }
+            _inputName = args[1];
+            _outputName = args[2];
+            return;
+        }
+
+        _inputStream = args.length > 1 ? openInput(args[1]) : System.in;
+        _outputStream = args.length > 2 ? openOutput(args[2]) : System.out;
+    }
+
+    /** A Main with no configuration or files. */
+    private Main() {
+    }
+
+    /** Return a Main holding the configuration read from the file named
+     *  CONFIGFILE, which may be shared by any number of jobs (see
+     *  Main(Main, BufferedReader, Writer)) on any threads. */
+    static Main configuration(String configFile) {
+        Main result = new Main();
+        result._config = result.getConfig(configFile);
+        try {
+            result.readConfig();
+        } finally {
+            if (result._config != null) {
+                result._config.close();
+            }
         }
+        return result;
     }
 
-    /** Return a Scanner reading from the file named FILENAME. */
-    private Scanner getInput(String fileName) {
+    /** A Main applying the configuration held by CONFIGURATION to the
+     *  messages in INPUT, sending the results to OUTPUT. */
+    Main(Main configuration, BufferedReader input, Writer output) {
+        _alphabet = configuration._alphabet;
+        numRotors = configuration.numRotors;
+        numPawls = configuration.numPawls;
+        _allRots = configuration._allRots;
+        _registry = configuration._registry;
+        _cache = configuration._cache;
+        _settingsCache = configuration._settingsCache;
+        _input = input;
+        _output = output;
+    }
+
+    /** Apply my configuration to the messages in my input, sending the
+     *  results to my output, which is flushed but not closed. */
+    void processJob() throws IOException {
+        try {
+            process(newMachine());
+        } finally {
+            flush(_output);
+        }
+    }
+
+    /** Record the options ("--" arguments) in ARGS and return the
+     *  remaining arguments. */
+    private String[] options(String[] args) {
+        ArrayList<String> rest = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                rest.add(arg);
+                continue;
+            }
+            String[] opt = arg.split("=", 2);
+            String value = opt.length > 1 ? opt[1] : "";
+            switch (opt[0]) {
+            case "--engine":
+                if (!value.equals("compiled") && !value.equals("object")) {
+                    throw error("unknown engine: %s", value);
+                }
+                _compiledEngine = value.equals("compiled");
+                break;
+            case "--compile-config":
+                _compileConfig = true;
+                break;
+            case "--mmap":
+                _mapped = true;
+                break;
+            case "--parallel":
+                _threads = opt.length == 1
+                    ? Runtime.getRuntime().availableProcessors()
+                    : intOption(arg, value);
+                if (_threads == 0) {
+                    throw error("bad value for option %s", arg);
+                }
+                break;
+            case "--chunk-size":
+                _chunkSize = intOption(arg, value);
+                if (_chunkSize == 0) {
+                    throw error("bad value for option %s", arg);
+                }
+                if (_threads == 0) {
+                    _threads = Runtime.getRuntime().availableProcessors();
+                }
+                break;
+            case "--flush-interval":
+                _flushInterval = intOption(arg, value);
+                break;
+            case "--cache-size":
+                _cacheSize = intOption(arg, value);
+                break;
+            case "--settings-cache-size":
+                _settingsCacheSize = intOption(arg, value);
+                break;
+            case "--cache-stats":
+                _cacheStats = true;
+                break;
+            case "--metrics":
+                _metrics = true;
+                break;
+            case "--jmx":
+                METRICS.registerMBean();
+                break;
+            default:
+                throw error("unknown option: %s", arg);
+            }
+        }
+        return rest.toArray(new String[0]);
+    }
+
+    /** Return the non-negative integer VALUE of option ARG. */
+    private static int intOption(String arg, String value) {
         try {
+            int result = Integer.parseInt(value);
+            if (result >= 0) {
+                return result;
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through to the error below. */
+        }
+        throw error("bad value for option %s", arg);
+    }
+
+    /** Return a Scanner reading from the file named FILENAME, or null if
+     *  it holds a compiled configuration (setting _precompiled). */
+    private Scanner getConfig(String fileName) {
+        _configName = fileName;
+        try {
+            if (CompiledConfig.isCompiled(fileName)) {
+                _precompiled = true;
+                return null;
+            }
             return new Scanner(new File(fileName));
         } catch (IOException excp) {
             throw error("could not open %s", fileName);
         }
     }
 
-    /** Return a PrintStream writing to the file named FILENAME. */
-    private PrintStream getOutput(String fileName) {
+    /** Return a stream reading from the file named FILENAME. */
+    private InputStream openInput(String fileName) {
+        try {
+            return new FileInputStream(fileName);
+        } catch (IOException excp) {
+            throw error("could not open %s", fileName);
+        }
+    }
+
+    /** Return a stream writing to the file named FILENAME. */
+    private OutputStream openOutput(String fileName) {
         try {
-            return new PrintStream(new File(fileName));
+            return new FileOutputStream(fileName);
         } catch (IOException excp) {
             throw error("could not open %s", fileName);
         }
     }
 
     /** Configure an Enigma machine from the contents of configuration
-     *  file _config and apply it to the messages in _input, sending the
-     *  results to _output. */
+     *  file _config and apply it to the messages in _inputStream, sending
+     *  the results to _outputStream.  If the alphabet is all ASCII, the
+     *  messages are processed as bytes, with no decoding or encoding of
+     *  characters; otherwise (or when converting in parallel), they are
+     *  decoded into characters. */
     private void process() {
-        String nextInputLine;
-        Machine m = readConfig();
-        nextInputLine = _input.nextLine();
-        while (nextInputLine.isEmpty()) {
-            nextInputLine = _input.nextLine();
-        }
-        if (!nextInputLine.contains("*")) {
-            throw new EnigmaException("bad setting format.");
+        try {
+            Machine m = readConfig();
+            if (_compileConfig) {
+                new CompiledConfig(_alphabet, numRotors, numPawls, _registry)
+                    .write(_outputName);
+                return;
+            }
+            boolean ascii = _alphabet.byteTable() != null;
+            if (_mapped && ascii) {
+                processMapped(m);
+                return;
+            } else if (_mapped) {
+                _inputStream = openInput(_inputName);
+                _outputStream = openOutput(_outputName);
+            }
+            if (ascii && _threads == 0) {
+                OutputStream out =
+                    new BufferedOutputStream(_outputStream, BUFFER_SIZE);
+                try {
+                    processBytes(m, out);
+                } finally {
+                    flush(out);
+                }
+                return;
+            }
+            _input = new BufferedReader(new InputStreamReader(_inputStream),
+                                        BUFFER_SIZE);
+            _output = new BufferedWriter(new OutputStreamWriter(_outputStream),
+                                         BUFFER_SIZE);
+            try {
+                if (_threads > 0) {
+                    processParallel();
+                } else {
+                    process(m);
+                }
+            } finally {
+                flush(_output);
+            }
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        } finally {
+            if (_cacheStats && _cache != null) {
+                System.err.println(_cache);
+            }
+            if (_cacheStats && _settingsCache != null) {
+                System.err.println(_settingsCache);
+            }
+            if (_metrics) {
+                System.err.println(METRICS.summary());
+            }
         }
+    }
+
+    /** Apply M to the messages in _input, sending the results to
+     *  _output. */
+    private void process(Machine m) throws IOException {
+        String nextInputLine = firstSettings();
         setUp(m, nextInputLine);
 
-        while (_input.hasNextLine()) {
-            nextInputLine = _input.nextLine();
-            if (nextInputLine.isEmpty()
-                    || Pattern.matches("\\s", nextInputLine)) {
-                _output.println(" ");
-            } else if (nextInputLine.contains("*")) {
+        long lines = 0;
+        while ((nextInputLine = _input.readLine()) != null) {
+            if (isBlank(nextInputLine)) {
+                _output.write(BLANK_LINE);
+            } else if (nextInputLine.indexOf('*') >= 0) {
                 setUp(m, nextInputLine);
             } else {
-                String result = m.convert(nextInputLine.replaceAll(" ", ""));
-                printMessageLine(result);
+                int len = stripSpaces(nextInputLine);
+                Events.Convert event = new Events.Convert();
+                event.begin();
+                long start = System.nanoTime();
+                m.convert(_buffer, 0, len, _buffer, 0);
+                long converted = System.nanoTime();
+                event.done(len);
+                printMessageLine(_buffer, len);
+                record(len, start, converted, System.nanoTime());
+            }
+            lines += 1;
+            if (_flushInterval > 0 && lines % _flushInterval == 0) {
+                flush(_output);
+            }
+        }
+    }
+
+    /** Return the first non-empty line of _input, which must be a
+     *  settings line. */
+    private String firstSettings() throws IOException {
+        String line = _input.readLine();
+        while (line != null && line.isEmpty()) {
+            line = _input.readLine();
+        }
+        if (line == null || !line.contains("*")) {
+            throw new EnigmaException("bad setting format.");
+        }
+        return line;
+    }
+
+    /** Convert the messages in _input, sending the results to _output.
+     *  Since each settings line resets the machine, the lines following
+     *  one settings line up to the next form an independent segment.
+     *  Segments are read in batches of about BATCH_SIZE characters, and
+     *  each batch is converted on _threads threads, each segment with its
+     *  own machine; the results are written in their original order. */
+    private void processParallel() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(_threads);
+        try {
+            String settings = firstSettings();
+            ArrayList<Segment> batch = new ArrayList<>();
+            long batchSize = 0;
+            while (settings != null) {
+                Segment segment = new Segment(settings);
+                String line;
+                while ((line = _input.readLine()) != null
+                       && (isBlank(line) || line.indexOf('*') < 0)) {
+                    segment.add(line);
+                }
+                settings = line;
+                batch.add(segment);
+                batchSize += segment.size();
+                if (batchSize >= BATCH_SIZE || settings == null) {
+                    for (Future<Segment> done : pool.invokeAll(batch)) {
+                        done.get().writeTo(_output);
+                    }
+                    batch.clear();
+                    batchSize = 0;
+                }
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw error("conversion interrupted: %s", excp);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** The input lines following a settings line up to the next settings
+     *  line, which are converted (by call()) on a fresh machine. */
+    private class Segment implements Callable<Segment> {
+
+        /** A segment starting with settings line SETTINGS. */
+        Segment(String settings) {
+            _settings = settings;
+        }
+
+        /** Add LINE to the lines following my settings line. */
+        void add(String line) {
+            _lines.add(line);
+            _size += line.length();
+        }
+
+        /** Return the total length of my lines. */
+        long size() {
+            return _size;
+        }
+
+        @Override
+        public Segment call() {
+            try {
+                if (_chunkSize > 0 && _size > _chunkSize) {
+                    convertChunked();
+                } else {
+                    convert();
+                }
+            } catch (EnigmaException excp) {
+                _error = excp;
+            }
+            return this;
+        }
+
+        /** Convert my lines one after another on a single machine. */
+        private void convert() {
+            Machine m = newMachine();
+            char[] buf = new char[INITIAL_BUFFER_SIZE];
+            char[] out = new char[INITIAL_BUFFER_SIZE];
+            setUp(m, _settings);
+            for (String line : _lines) {
+                if (isBlank(line)) {
+                    _result.append(BLANK_LINE);
+                    continue;
+                }
+                if (buf.length < line.length()) {
+                    buf = new char[line.length()];
+                }
+                int len = stripSpaces(line, buf, 0);
+                Events.Convert event = new Events.Convert();
+                event.begin();
+                long start = System.nanoTime();
+                m.convert(buf, 0, len, buf, 0);
+                long converted = System.nanoTime();
+                event.done(len);
+                if (out.length < formattedLength(len)) {
+                    out = new char[formattedLength(len)];
+                }
+                _result.append(out, 0, formatGroups(buf, 0, len, out));
+                record(len, start, converted, System.nanoTime());
+            }
+        }
+
+        /** Convert my lines by gathering all of their characters into one
+         *  message, converting chunks of it concurrently, and then printing
+         *  the converted characters line by line. */
+        private void convertChunked() {
+            Machine m = newMachine();
+            setUp(m, _settings);
+            if (_size > Integer.MAX_VALUE) {
+                throw error("message too long");
+            }
+            char[] letters = new char[(int) _size];
+            int[] lengths = new int[_lines.size()];
+            int total = 0;
+            for (int i = 0; i < lengths.length; i++) {
+                String line = _lines.get(i);
+                lengths[i] = isBlank(line) ? -1
+                    : stripSpaces(line, letters, total);
+                total += Math.max(0, lengths[i]);
+            }
+            ArrayList<Chunk> chunks = new ArrayList<>();
+            for (int start = 0; start < total; start += _chunkSize) {
+                chunks.add(new Chunk(m.copy(), letters, start,
+                                     Math.min(total, start + _chunkSize)));
+            }
+            ForkJoinTask.invokeAll(chunks);
+            int errorAt = total;
+            for (Chunk chunk : chunks) {
+                if (chunk.error() != null) {
+                    _error = chunk.error();
+                    errorAt = chunk.errorAt();
+                    break;
+                }
+            }
+            char[] out = new char[INITIAL_BUFFER_SIZE];
+            int pos = 0;
+            long start = System.nanoTime();
+            long messages = 0;
+            for (int len : lengths) {
+                if (len < 0) {
+                    _result.append(BLANK_LINE);
+                    continue;
+                } else if (pos + len > errorAt) {
+                    break;
+                }
+                if (out.length < formattedLength(len)) {
+                    out = new char[formattedLength(len)];
+                }
+                _result.append(out, 0, formatGroups(letters, pos, len, out));
+                pos += len;
+                messages += 1;
+            }
+            METRICS.formatted(System.nanoTime() - start);
+            METRICS.messages(messages);
+        }
+
+        /** Write my converted lines to OUT, then report any error that
+         *  stopped my conversion. */
+        void writeTo(Writer out) throws IOException {
+            out.append(_result);
+            if (_error != null) {
+                throw _error;
+            }
+        }
+
+        /** My settings line. */
+        private final String _settings;
+
+        /** The lines following my settings line. */
+        private final ArrayList<String> _lines = new ArrayList<>();
+
+        /** Total length of _lines. */
+        private long _size;
+
+        /** Output from converting my lines. */
+        private final StringBuilder _result = new StringBuilder();
+
+        /** The error that stopped my conversion, if any. */
+        private EnigmaException _error;
+    }
+
+    /** Part of a message that is converted in place on its own machine,
+     *  which is first advanced to where it would be after converting the
+     *  preceding characters of the message. */
+    private class Chunk extends RecursiveAction {
+
+        /** A chunk of LETTERS from START to END, the whole message, to
+         *  be converted on MACHINE, which is set up for its start. */
+        Chunk(Machine machine, char[] letters, int start, int end) {
+            _machine = machine;
+            _letters = letters;
+            _start = start;
+            _end = end;
+        }
+
+        @Override
+        protected void compute() {
+            Machine m = _machine;
+            m.seek(_start);
+            int end = _start;
+            while (end < _end && _alphabet.contains(_letters[end])) {
+                end += 1;
+            }
+            Events.Convert event = new Events.Convert();
+            event.begin();
+            long start = System.nanoTime();
+            m.convert(_letters, _start, end - _start, _letters, _start);
+            METRICS.converted(end - _start, System.nanoTime() - start);
+            event.done(end - _start);
+            if (end < _end) {
+                _errorAt = end;
+                try {
+                    _alphabet.toInt(_letters[end]);
+                } catch (EnigmaException excp) {
+                    _error = excp;
+                }
+            }
+        }
+
+        /** Return the error that stopped my conversion, or null. */
+        EnigmaException error() {
+            return _error;
+        }
+
+        /** Return the position in the message of the character that
+         *  stopped my conversion, if error() is not null. */
+        int errorAt() {
+            return _errorAt;
+        }
+
+        /** The machine converting me. */
+        private final Machine _machine;
+
+        /** The whole message. */
+        private final char[] _letters;
+
+        /** Bounds of my part of _letters. */
+        private final int _start, _end;
+
+        /** The error that stopped my conversion, if any. */
+        private EnigmaException _error;
+
+        /** Position of the character causing _error. */
+        private int _errorAt;
+    }
+
+    /** Apply M to the messages in the file named _inputName, writing the
+     *  results to the file named _outputName.  Both files are memory-mapped
+     *  and processed as bytes, as by processBytes.  The input is mapped a
+     *  window at a time, each window starting at the beginning of a
+     *  line. */
+    private void processMapped(Machine m) throws IOException {
+        try (FileChannel in = FileChannel.open(Paths.get(_inputName));
+             MappedOutput out = new MappedOutput(Paths.get(_outputName),
+                                                 maxOutput(in.size()))) {
+            long size = in.size();
+            long start = 0;
+            while (start < size) {
+                int limit = (int) Math.min(MAP_WINDOW, size - start);
+                boolean last = start + limit == size;
+                MappedByteBuffer buf =
+                    in.map(FileChannel.MapMode.READ_ONLY, start, limit);
+                int pos = processByteLines(m, buf, limit, last, out);
+                if (pos == 0) {
+                    throw error("input line too long for --mmap");
+                }
+                start += pos;
+            }
+            if (!_settingsSeen) {
+                throw new EnigmaException("bad setting format.");
+            }
+        }
+    }
+
+    /** Return an upper bound on the number of bytes of output from SIZE
+     *  bytes of input.  A line of input produces at most three times its
+     *  length, counting its terminator: a blank line becomes a space and
+     *  LINE_END, and a message line at most gains a space per five
+     *  letters and a longer LINE_END.  The last line may lack a
+     *  terminator. */
+    private static long maxOutput(long size) {
+        return 3 * size + LINE_END_BYTES.length;
+    }
+
+    /** Apply M to the messages in _inputStream, writing the results to
+     *  OUT.  Each byte of input stands for one character of M's (ASCII)
+     *  alphabet, and each byte of output for one character of the result,
+     *  so that no characters are decoded or encoded.  Input is read into a
+     *  buffer that grows as needed to hold the longest line. */
+    private void processBytes(Machine m, OutputStream out)
+        throws IOException {
+        byte[] buf = new byte[BUFFER_SIZE];
+        int filled = 0;
+        boolean eof = false;
+        while (!eof) {
+            int n = _inputStream.read(buf, filled, buf.length - filled);
+            if (n < 0) {
+                eof = true;
+            } else {
+                filled += n;
+            }
+            int pos = processByteLines(m, ByteBuffer.wrap(buf), filled, eof,
+                                       out);
+            pos = Math.min(pos, filled);
+            if (pos == 0 && filled == buf.length) {
+                buf = Arrays.copyOf(buf, 2 * buf.length);
+            } else {
+                System.arraycopy(buf, pos, buf, 0, filled - pos);
+                filled -= pos;
+            }
+        }
+        if (!_settingsSeen) {
+            throw new EnigmaException("bad setting format.");
+        }
+    }
+
+    /** Apply M to the lines held in the first LIMIT bytes of BUF, writing
+     *  the results to OUT, and return the position after the last line
+     *  processed.  If LAST, these are the last bytes of input, and a final
+     *  line need not be terminated; otherwise, only terminated lines are
+     *  processed. */
+    private int processByteLines(Machine m, ByteBuffer buf, int limit,
+                                 boolean last, OutputStream out)
+        throws IOException {
+        int pos = 0;
+        while (pos < limit) {
+            int end = pos;
+            while (end < limit && buf.get(end) != '\n'
+                   && buf.get(end) != '\r') {
+                end += 1;
+            }
+            if (!last && (end == limit || end == limit - 1
+                          && buf.get(end) == '\r')) {
+                break;
+            }
+            if (_settingsSeen) {
+                processByteLine(m, buf, pos, end, out);
+            } else if (end > pos) {
+                setUp(m, byteLine(buf, pos, end, true));
+                _settingsSeen = true;
+            }
+            pos = end + 1;
+            if (end + 1 < limit && buf.get(end) == '\r'
+                && buf.get(end + 1) == '\n') {
+                pos += 1;
+            }
+            _lines += 1;
+            if (_flushInterval > 0 && _lines % _flushInterval == 0) {
+                flush(out);
             }
         }
+        return pos;
+    }
+
+    /** Apply M to the input line held in BUF between positions START and
+     *  END, writing any result to OUT. */
+    private void processByteLine(Machine m, ByteBuffer buf, int start,
+                                 int end, OutputStream out)
+        throws IOException {
+        int len = end - start;
+        if (len == 0 || len == 1 && WHITESPACE.indexOf(buf.get(start)) >= 0) {
+            out.write(BLANK_LINE_BYTES);
+            return;
+        }
+        for (int i = start; i < end; i++) {
+            if (buf.get(i) == '*') {
+                setUp(m, byteLine(buf, start, end, false));
+                return;
+            }
+        }
+        if (_bytes.length < len) {
+            _bytes = new byte[Math.max(len, 2 * _bytes.length)];
+        }
+        len = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buf.get(i);
+            if (b != ' ') {
+                _bytes[len] = b;
+                len++;
+            }
+        }
+        Events.Convert event = new Events.Convert();
+        event.begin();
+        long begin = System.nanoTime();
+        m.convert(_bytes, 0, len, _bytes, 0);
+        long converted = System.nanoTime();
+        event.done(len);
+        int size = formattedLength(len);
+        if (_lineBytes.length < size) {
+            _lineBytes = new byte[Math.max(size, 2 * _lineBytes.length)];
+        }
+        out.write(_lineBytes, 0, formatGroups(_bytes, 0, len, _lineBytes));
+        record(len, begin, converted, System.nanoTime());
+    }
+
+    /** Return the line held in BUF between START and END as a String.  If
+     *  FIRST, it is the first non-empty line of input and must be a
+     *  settings line. */
+    private String byteLine(ByteBuffer buf, int start, int end,
+                            boolean first) {
+        byte[] bytes = new byte[end - start];
+        buf.get(start, bytes);
+        String line = new String(bytes);
+        if (first && line.indexOf('*') < 0) {
+            throw new EnigmaException("bad setting format.");
+        }
+        return line;
+    }
+
+    /** Return true iff LINE is empty or a single whitespace character,
+     *  and so is copied to the output as a blank line. */
+    static boolean isBlank(String line) {
+        return line.isEmpty()
+            || line.length() == 1 && WHITESPACE.indexOf(line.charAt(0)) >= 0;
     }
 
     /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
+     *  file _config, or from the compiled configuration file _configName
+     *  if _precompiled. */
     private Machine readConfig() {
+        Events.ConfigLoad event = new Events.ConfigLoad();
+        event.begin();
+        long start = System.nanoTime();
+        if (_precompiled) {
+            try {
+                CompiledConfig compiled = CompiledConfig.load(_configName);
+                _alphabet = compiled.alphabet();
+                numRotors = compiled.numRotors();
+                numPawls = compiled.numPawls();
+                _registry = compiled.registry();
+            } catch (IOException excp) {
+                throw error("could not read %s", _configName);
+            }
+        } else {
+            readTextConfig();
+        }
+        if (_cacheSize > 0) {
+            _cache = new SubstitutionCache(_cacheSize);
+        }
+        if (_settingsCacheSize > 0) {
+            _settingsCache = new SettingsCache(_settingsCacheSize);
+        }
+        METRICS.configRead(System.nanoTime() - start);
+        event.done(_configName, _registry.size());
+        return newMachine();
+    }
+
+    /** Read the alphabet, numbers of rotor slots and pawls and available
+     *  rotors from the contents of configuration file _config. */
+    private void readTextConfig() {
         try {
             String conAL = _config.next();
             if (conAL.contains("*") || conAL.contains(",")
@@ -160,15 +897,47 @@ public final class Main {
                 }
                 name = temp2;
             }
-            return new Machine(_alphabet, numRotors, numPawls, _allRots);
+            _registry = new RotorRegistry(_allRots);
         } catch (NoSuchElementException excp) {
             throw error("configuration file truncated");
         }
     }
 
+    /** Return a new machine built from the configuration read by
+     *  readConfig().  Machines share the rotor definitions but each has
+     *  its own rotor settings. */
+    private Machine newMachine() {
+        Machine m = new Machine(_alphabet, numRotors, numPawls, _registry);
+        m.setCache(_cache);
+        m.setCompiled(_compiledEngine);
+        return m;
+    }
+
     /** Set M according to the specification given on SETTINGS,
-     *  which must have the format specified in the assignment. */
+     *  which must have the format specified in the assignment, restoring
+     *  the state it sets up from _settingsCache if SETTINGS has been
+     *  applied before. */
     private void setUp(Machine M, String settings) {
+        Events.SetUp event = new Events.SetUp();
+        event.begin();
+        long start = System.nanoTime();
+        MachineState state =
+            _settingsCache == null ? null : _settingsCache.get(settings);
+        if (state != null) {
+            M.restore(state);
+        } else {
+            applySettings(M, settings);
+            if (_settingsCache != null) {
+                _settingsCache.put(settings, M.state());
+            }
+        }
+        METRICS.setUp(System.nanoTime() - start);
+        event.done(settings);
+    }
+
+    /** Set M according to the specification given on SETTINGS,
+     *  which must have the format specified in the assignment. */
+    private void applySettings(Machine M, String settings) {
         String[] set = settings.split(" ");
         if (set.length == 0) {
             throw new EnigmaException("no rotors in setting.");
@@ -178,23 +947,18 @@ public final class Main {
         }
         String[] rotorNames = new String[M.numRotors()];
 
-        for (Rotor rot : _allRots) {
-            allRotorsNames.add(rot.name());
-        }
-
         for (int i = 1; i < M.numRotors() + 1; i++) {
-            if (!allRotorsNames.contains(set[i])) {
+            if (!_registry.contains(set[i])) {
                 throw new EnigmaException("rotors misnamed in setting");
             } else {
                 rotorNames[i - 1] = set[i];
             }
         }
 
-        for (int i = 0; i < rotorNames.length - 1; i++) {
-            for (int j = i + 1; j < rotorNames.length; j++) {
-                if (rotorNames[i].equals(rotorNames[j])) {
-                    throw new EnigmaException("Duplicate Rotor");
-                }
+        HashSet<String> seen = new HashSet<>();
+        for (String rotorName : rotorNames) {
+            if (!seen.add(rotorName)) {
+                throw new EnigmaException("Duplicate Rotor");
             }
         }
 
@@ -226,35 +990,247 @@ public final class Main {
         M.setPlugboard(new Permutation(steckeredPairs, _alphabet));
     }
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        for (int i = 0; i < msg.length(); i += 5) {
-            if (msg.length() - i <= 5) {
-                _output.println(msg.substring(i, msg.length()) + " ");
-            } else {
-                _output.print(msg.substring(i, i + 5) + " ");
+    /** Flush OUT. */
+    private static void flush(Flushable out) throws IOException {
+        Events.Flush event = new Events.Flush();
+        event.begin();
+        out.flush();
+        event.done();
+    }
+
+    /** Record in METRICS that a message line of LEN characters began
+     *  conversion at time START, finished it at CONVERTED, and was
+     *  formatted by FORMATTED (all from System.nanoTime()). */
+    private static void record(int len, long start, long converted,
+                               long formatted) {
+        METRICS.converted(len, converted - start);
+        METRICS.formatted(formatted - converted);
+        METRICS.message(formatted - start);
+    }
+
+    /** Copy the characters of LINE other than blanks into _buffer,
+     *  enlarging it if needed, and return the number copied. */
+    private int stripSpaces(String line) {
+        if (_buffer.length < line.length()) {
+            _buffer = new char[Math.max(line.length(), 2 * _buffer.length)];
+        }
+        return stripSpaces(line, _buffer, 0);
+    }
+
+    /** Copy the characters of LINE other than blanks into BUF starting at
+     *  OFF, where there must be room for all of LINE, and return the number
+     *  copied. */
+    static int stripSpaces(String line, char[] buf, int off) {
+        int len = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c != ' ') {
+                buf[off + len] = c;
+                len++;
             }
         }
+        return len;
+    }
+
+    /** Print the first LEN characters of MSG in groups of five (except
+     *  that the last group may have fewer letters). */
+    private void printMessageLine(char[] msg, int len) throws IOException {
+        int size = formattedLength(len);
+        if (_lineBuffer.length < size) {
+            _lineBuffer = new char[Math.max(size, 2 * _lineBuffer.length)];
+        }
+        _output.write(_lineBuffer, 0, formatGroups(msg, 0, len, _lineBuffer));
+    }
+
+    /** Return the number of characters needed to print a message line of
+     *  LEN characters. */
+    static int formattedLength(int len) {
+        if (len == 0) {
+            return 0;
+        }
+        return len + (len + GROUP_SIZE - 1) / GROUP_SIZE + LINE_END.length();
+    }
+
+    /** Store the LEN bytes of MSG starting at OFF into OUT, formatted as
+     *  by formatGroups(char[], int, int, char[]), and return the number of
+     *  bytes stored. */
+    static int formatGroups(byte[] msg, int off, int len, byte[] out) {
+        int k = 0;
+        for (int i = 0; i < len; i += GROUP_SIZE) {
+            int n = Math.min(GROUP_SIZE, len - i);
+            System.arraycopy(msg, off + i, out, k, n);
+            k += n;
+            out[k] = ' ';
+            k += 1;
+        }
+        if (len > 0) {
+            System.arraycopy(LINE_END_BYTES, 0, out, k, LINE_END_BYTES.length);
+            k += LINE_END_BYTES.length;
+        }
+        return k;
+    }
+
+    /** Store the LEN characters of MSG starting at OFF into OUT, as they
+     *  are printed by printMessageLine: in groups of five, each followed by
+     *  a blank, and ending with a line separator.  Returns the number of
+     *  characters stored, which is formattedLength(LEN). */
+    static int formatGroups(char[] msg, int off, int len, char[] out) {
+        int k = 0;
+        for (int i = 0; i < len; i += GROUP_SIZE) {
+            int n = Math.min(GROUP_SIZE, len - i);
+            System.arraycopy(msg, off + i, out, k, n);
+            k += n;
+            out[k] = ' ';
+            k += 1;
+        }
+        if (len > 0) {
+            LINE_END.getChars(0, LINE_END.length(), out, k);
+            k += LINE_END.length();
+        }
+        return k;
     }
 
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
-    /** Source of input messages. */
-    private Scanner _input;
+    /** Source of input messages, when they are read as characters. */
+    private BufferedReader _input;
+
+    /** Source of input messages, as given on the command line. */
+    private InputStream _inputStream;
+
+    /** Destination of converted messages, as given on the command line. */
+    private OutputStream _outputStream;
+
+    /** Name of the input file, when it is memory-mapped. */
+    private String _inputName;
+
+    /** Name of the output file, when it is memory-mapped. */
+    private String _outputName;
 
     /** Source of machine configuration. */
     private Scanner _config;
 
-    /** File for encoded/decoded messages. */
-    private PrintStream _output;
+    /** File for encoded/decoded messages, when they are written as
+     *  characters. */
+    private Writer _output;
+
+    /** True iff machines should use the compiled engine. */
+    private boolean _compiledEngine = true;
+
+    /** Reusable buffer holding the message line being converted. */
+    private char[] _buffer = new char[INITIAL_BUFFER_SIZE];
+
+    /** Reusable buffer holding the formatted output line. */
+    private char[] _lineBuffer = new char[INITIAL_BUFFER_SIZE];
+
+    /** Reusable buffer holding the message line being converted, when
+     *  messages are processed as bytes. */
+    private byte[] _bytes = new byte[INITIAL_BUFFER_SIZE];
+
+    /** Reusable buffer holding the formatted output line, when messages
+     *  are processed as bytes. */
+    private byte[] _lineBytes = new byte[INITIAL_BUFFER_SIZE];
+
+    /** True iff the first settings line has been seen, when messages are
+     *  processed as bytes. */
+    private boolean _settingsSeen;
+
+    /** Number of input lines processed as bytes so far. */
+    private long _lines;
+
+    /** Number of input lines between flushes of _output, or 0 to flush
+     *  only when its buffer fills and at the end. */
+    private int _flushInterval;
+
+    /** Most entries in _cache. */
+    private int _cacheSize = DEFAULT_CACHE_SIZE;
+
+    /** True iff cache statistics are printed at the end. */
+    private boolean _cacheStats;
+
+    /** True iff metrics are printed at the end. */
+    private boolean _metrics;
+
+    /** Counts and timings of the work done, shared by the whole JVM. */
+    private static final Metrics METRICS = Metrics.get();
+
+    /** Compiled machines shared by all the machines for the configuration,
+     *  or null if there is no cache. */
+    private SubstitutionCache _cache;
+
+    /** Default most entries in _cache. */
+    private static final int DEFAULT_CACHE_SIZE = 16;
+
+    /** Most entries in _settingsCache. */
+    private int _settingsCacheSize = DEFAULT_SETTINGS_CACHE_SIZE;
+
+    /** Machine states set up by settings lines, shared by all the
+     *  machines for the configuration, or null if there is no cache. */
+    private SettingsCache _settingsCache;
+
+    /** Default most entries in _settingsCache. */
+    private static final int DEFAULT_SETTINGS_CACHE_SIZE = 64;
+
+    /** True iff the input and output files are to be memory-mapped. */
+    private boolean _mapped;
+
+    /** True iff the configuration is to be written in compiled form to
+     *  the file named _outputName rather than used. */
+    private boolean _compileConfig;
+
+    /** True iff the configuration file _configName holds a compiled
+     *  configuration. */
+    private boolean _precompiled;
+
+    /** Number of threads converting segments in parallel, or 0 to
+     *  convert them one at a time. */
+    private int _threads;
+
+    /** Number of characters in each chunk of a message converted in
+     *  parallel, or 0 to convert each message on a single thread. */
+    private int _chunkSize;
+
+    /** Approximate number of input characters read into each batch of
+     *  segments converted in parallel. */
+    private static final int BATCH_SIZE = 1 << 24;
+
+    /** Initial size of _buffer. */
+    private static final int INITIAL_BUFFER_SIZE = 128;
+
+    /** Size of the input and output buffers, in characters. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Largest part of the input file mapped at one time, in bytes. */
+    private static final int MAP_WINDOW = 1 << 30;
+
+    /** Number of letters in each printed group. */
+    static final int GROUP_SIZE = 5;
+
+    /** Line separator used when printing. */
+    static final String LINE_END = System.lineSeparator();
+
+    /** Output corresponding to a blank input line. */
+    private static final String BLANK_LINE = " " + LINE_END;
+
+    /** LINE_END as bytes. */
+    private static final byte[] LINE_END_BYTES = LINE_END.getBytes();
+
+    /** BLANK_LINE as bytes. */
+    private static final byte[] BLANK_LINE_BYTES = BLANK_LINE.getBytes();
+
+    /** The characters that make up a blank line on their own. */
+    private static final String WHITESPACE = " \t\n\u000B\f\r";
 
     /** arraylist of all the rotors that can be used. */
     private ArrayList<Rotor> _allRots = new ArrayList<>();
 
-    /** arraylist of the names of all the rotors that can be used. */
-    private ArrayList<String> allRotorsNames = new ArrayList<>();
+    /** Name of the configuration file. */
+    private String _configName;
+
+    /** Definitions of the rotors in _allRots, by name, shared by all
+     *  machines. */
+    private RotorRegistry _registry;
 
 
     /** A String containing cycles which readConfig() appends to. */
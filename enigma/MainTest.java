@@ -0,0 +1,192 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** JUnit tests for the ways Main processes its input: as bytes, mapped,
+ *  in parallel segments and in parallel chunks, each checked against
+ *  output computed directly with Machine.
+ *  @author Aarini
+ */
+public class MainTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String NL = System.lineSeparator();
+
+    /** Input and expected output built by addSegments. */
+    private StringBuilder input = new StringBuilder(),
+        expected = new StringBuilder();
+
+    /** Add to input SEGMENTS random settings lines, chosen with RANDOM,
+     *  each followed by up to three random message lines, and add their
+     *  output to expected.  Settings lines are sometimes repeated and
+     *  sometimes followed directly by another. */
+    private void addSegments(Random random, int segments) {
+        String settings = null;
+        for (int s = 0; s < segments; s++) {
+            if (settings == null || random.nextInt(4) > 0) {
+                settings = randomSettings(random);
+            }
+            input.append(settings).append("\n");
+            Machine machine = new Machine(UPPER, 5, 3, rotors());
+            String[] fields = settings.split(" ");
+            machine.insertRotors(Arrays.copyOfRange(fields, 1, 6));
+            machine.setRotors(fields[6]);
+            String cycles = "";
+            for (int i = 7; i < fields.length; i++) {
+                if (fields[i].startsWith("(")) {
+                    cycles += fields[i] + " ";
+                } else {
+                    machine.setRingSetting(fields[i]);
+                }
+            }
+            machine.setPlugboard(new Permutation(cycles, UPPER));
+            for (int n = random.nextInt(4); n > 0; n -= 1) {
+                addMessage(random, machine);
+            }
+        }
+    }
+
+    /** Return a random settings line, chosen with RANDOM, with an
+     *  optional ring setting and up to three plugboard pairs. */
+    private static String randomSettings(Random random) {
+        List<String> moving = new ArrayList<>(List.of("I", "II", "III",
+                                                      "IV"));
+        Collections.shuffle(moving, random);
+        String result = "* B BETA " + String.join(" ", moving.subList(0, 3))
+            + " " + letters(random, 4);
+        if (random.nextBoolean()) {
+            result += " " + letters(random, 4);
+        }
+        List<Character> plugs = new ArrayList<>();
+        for (char c : UPPER_STRING.toCharArray()) {
+            plugs.add(c);
+        }
+        Collections.shuffle(plugs, random);
+        for (int i = random.nextInt(4); i > 0; i -= 1) {
+            result += " (" + plugs.get(2 * i) + plugs.get(2 * i + 1) + ")";
+        }
+        return result;
+    }
+
+    /** Add to input a random message line chosen with RANDOM: blank, a
+     *  single space, or up to 400 letters with spaces among them.  Add its
+     *  conversion by MACHINE to expected. */
+    private void addMessage(Random random, Machine machine) {
+        int kind = random.nextInt(8);
+        if (kind < 2) {
+            input.append(kind == 0 ? "" : " ").append("\n");
+            expected.append(" ").append(NL);
+            return;
+        }
+        String letters = letters(random, 1 + random.nextInt(400));
+        for (int i = 0; i < letters.length(); i += 1) {
+            input.append(letters.charAt(i));
+            if (random.nextInt(6) == 0) {
+                input.append(" ");
+            }
+        }
+        input.append("\n");
+        String result = machine.convert(letters);
+        for (int i = 0; i < result.length(); i += Main.GROUP_SIZE) {
+            expected.append(result, i,
+                            Math.min(i + Main.GROUP_SIZE, result.length()))
+                .append(" ");
+        }
+        expected.append(NL);
+    }
+
+    /** Return LEN random letters chosen with RANDOM. */
+    private static String letters(Random random, int len) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < len; i += 1) {
+            result.append(UPPER_STRING.charAt(random.nextInt(26)));
+        }
+        return result.toString();
+    }
+
+    /** Return the output of Main with options OPTIONS on input. */
+    private String run(String... options) throws IOException {
+        Path config = Files.createTempFile("enigma", ".conf");
+        Path in = Files.createTempFile("enigma", ".in");
+        Path out = Files.createTempFile("enigma", ".out");
+        try {
+            Files.writeString(config, config());
+            Files.writeString(in, input);
+            String[] args = Arrays.copyOf(options, options.length + 3);
+            args[options.length] = config.toString();
+            args[options.length + 1] = in.toString();
+            args[options.length + 2] = out.toString();
+            Main.main(args);
+            return Files.readString(out);
+        } finally {
+            Files.delete(config);
+            Files.delete(in);
+            Files.delete(out);
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSequential() throws IOException {
+        addSegments(new Random(1), 40);
+        assertEquals(expected.toString(), run());
+        assertEquals(expected.toString(), run("--engine=object"));
+        assertEquals(expected.toString(), run("--mmap"));
+    }
+
+    @Test
+    public void testParallelSegments() throws IOException {
+        addSegments(new Random(2), 40);
+        assertEquals(expected.toString(), run("--parallel"));
+        assertEquals(expected.toString(), run("--parallel=3"));
+        assertEquals(expected.toString(), run("--parallel=1"));
+    }
+
+    @Test
+    public void testParallelChunks() throws IOException {
+        addSegments(new Random(3), 40);
+        for (int chunk : new int[] { 1, 5, 7, 64, 1000 }) {
+            assertEquals("chunk size " + chunk, expected.toString(),
+                         run("--parallel=3", "--chunk-size=" + chunk));
+        }
+    }
+
+    @Test
+    public void testLongMessage() throws IOException {
+        Random random = new Random(4);
+        input.append("* B BETA I II III ZZZZ (AB)\n");
+        Machine machine = new Machine(UPPER, 5, 3, rotors());
+        machine.insertRotors(new String[] { "B", "BETA", "I", "II", "III" });
+        machine.setRotors("ZZZZ");
+        machine.setPlugboard(new Permutation("(AB)", UPPER));
+        for (int i = 0; i < 100; i += 1) {
+            addMessage(random, machine);
+        }
+        addSegments(random, 3);
+        assertEquals(expected.toString(), run());
+        for (int chunk : new int[] { 13, 777, 5000 }) {
+            assertEquals("chunk size " + chunk, expected.toString(),
+                         run("--chunk-size=" + chunk));
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/** An output file written through a succession of memory-mapped windows.
+ *  The file grows a window at a time and is cut back to the number of
+ *  bytes actually written when it is closed.  The first window is no
+ *  larger than the expected size of the file, so that writing a small
+ *  file never makes a large one, even for a moment.
+ *  @author Aarini
+ */
+final class MappedOutput extends OutputStream {
+
+    /** An empty output file at PATH, replacing any existing contents,
+     *  which is expected to hold at most EXPECTED bytes. */
+    MappedOutput(Path path, long expected) throws IOException {
+        _channel = FileChannel.open(path, CREATE, READ, WRITE,
+                                    TRUNCATE_EXISTING);
+        _window = _channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                               Math.min(WINDOW, expected));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        reserve(1);
+        _window.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) throws IOException {
+        reserve(len);
+        _window.put(bytes, off, len);
+    }
+
+    /** Return the number of bytes written so far. */
+    long size() {
+        return _base + _window.position();
+    }
+
+    /** Make sure that the current window has room for N more bytes,
+     *  mapping a new one if not. */
+    private void reserve(int n) throws IOException {
+        if (_window.remaining() < n) {
+            _base += _window.position();
+            _window = _channel.map(FileChannel.MapMode.READ_WRITE, _base,
+                                   Math.max(WINDOW, n));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            _channel.truncate(size());
+        } finally {
+            _channel.close();
+        }
+    }
+
+    /** Size of each mapped window, in bytes. */
+    private static final int WINDOW = 1 << 26;
+
+    /** The output file. */
+    private final FileChannel _channel;
+
+    /** File position at which _window starts. */
+    private long _base;
+
+    /** The currently mapped part of the file. */
+    private MappedByteBuffer _window;
+
+}
@@ -0,0 +1,243 @@
+package enigma;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/** Counts of the work done by the simulator and the time spent on each
+ *  part of it, shared by everything in the JVM.  Counters are striped
+ *  (LongAdders), so threads recording at once do not contend, and they
+ *  are updated once per line rather than per character, so they may be
+ *  left on.  Message line latencies are kept in a histogram with
+ *  SUB_BUCKETS buckets per power of two, so percentiles are accurate to
+ *  within 1/SUB_BUCKETS.
+ *
+ *  The counters can be read over JMX, as the MBean named OBJECT_NAME, once
+ *  registerMBean() has been called, and summarized by summary().
+ *  @author Aarini
+ */
+public final class Metrics implements MetricsMBean {
+
+    /** Return the metrics for this JVM. */
+    static Metrics get() {
+        return INSTANCE;
+    }
+
+    /** Metrics with all counters 0. */
+    private Metrics() {
+        _latency = new LongAdder[Long.SIZE * SUB_BUCKETS];
+        for (int i = 0; i < _latency.length; i++) {
+            _latency[i] = new LongAdder();
+        }
+    }
+
+    /** Make me readable over JMX in the platform MBean server, if I am
+     *  not already. */
+    void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException excp) {
+            return;
+        } catch (JMException excp) {
+            throw new EnigmaException("could not register metrics: "
+                                      + excp.getMessage());
+        }
+    }
+
+    /** Record that reading a configuration took NANOS nanoseconds. */
+    void configRead(long nanos) {
+        _configNanos.add(nanos);
+    }
+
+    /** Record that applying a settings line took NANOS nanoseconds. */
+    void setUp(long nanos) {
+        _settingsChanges.increment();
+        _setUpNanos.add(nanos);
+    }
+
+    /** Record that converting CHARS characters took NANOS nanoseconds. */
+    void converted(long chars, long nanos) {
+        _characters.add(chars);
+        _convertNanos.add(nanos);
+    }
+
+    /** Record that formatting some output took NANOS nanoseconds. */
+    void formatted(long nanos) {
+        _formatNanos.add(nanos);
+    }
+
+    /** Record that a message line was converted and formatted in NANOS
+     *  nanoseconds. */
+    void message(long nanos) {
+        _messages.increment();
+        _latency[bucket(Math.max(0, nanos))].increment();
+        _maxLatency.accumulate(nanos);
+    }
+
+    /** Record that N message lines were converted, without timing them
+     *  individually (as when they are converted in chunks). */
+    void messages(long n) {
+        _messages.add(n);
+    }
+
+    /** Return the histogram bucket for latency NANOS (at least 0). */
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int power = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (power - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (power - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /** Return the largest latency that falls in bucket B. */
+    private static long bucketLimit(int b) {
+        if (b < SUB_BUCKETS) {
+            return b;
+        }
+        int power = b / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = b % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (power - SUB_BITS)) - 1;
+    }
+
+    /** Return the latency below which a fraction P of the recorded message
+     *  latencies fall (to within the resolution of the histogram). */
+    long latencyPercentile(double p) {
+        long[] counts = new long[_latency.length];
+        long total = 0;
+        for (int b = 0; b < counts.length; b++) {
+            counts[b] = _latency[b].sum();
+            total += counts[b];
+        }
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int b = 0; b < counts.length; b++) {
+            seen += counts[b];
+            if (seen >= rank && seen > 0) {
+                return Math.min(bucketLimit(b), getLatencyMaxNanos());
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public long getCharacters() {
+        return _characters.sum();
+    }
+
+    @Override
+    public long getMessages() {
+        return _messages.sum();
+    }
+
+    @Override
+    public long getSettingsChanges() {
+        return _settingsChanges.sum();
+    }
+
+    @Override
+    public long getConfigNanos() {
+        return _configNanos.sum();
+    }
+
+    @Override
+    public long getSetUpNanos() {
+        return _setUpNanos.sum();
+    }
+
+    @Override
+    public long getConvertNanos() {
+        return _convertNanos.sum();
+    }
+
+    @Override
+    public long getFormatNanos() {
+        return _formatNanos.sum();
+    }
+
+    @Override
+    public long getLatencyP50Nanos() {
+        return latencyPercentile(0.5);
+    }
+
+    @Override
+    public long getLatencyP90Nanos() {
+        return latencyPercentile(0.9);
+    }
+
+    @Override
+    public long getLatencyP99Nanos() {
+        return latencyPercentile(0.99);
+    }
+
+    @Override
+    public long getLatencyMaxNanos() {
+        return Math.max(0, _maxLatency.get());
+    }
+
+    @Override
+    public void reset() {
+        _characters.reset();
+        _messages.reset();
+        _settingsChanges.reset();
+        _configNanos.reset();
+        _setUpNanos.reset();
+        _convertNanos.reset();
+        _formatNanos.reset();
+        _maxLatency.reset();
+        for (LongAdder bucket : _latency) {
+            bucket.reset();
+        }
+    }
+
+    /** Return a summary of my counters, as printed at the end of a run. */
+    String summary() {
+        return String.format("enigma: %d characters, %d message lines,"
+                             + " %d settings lines%n"
+                             + "  time (ms): config %.3f, setUp %.3f,"
+                             + " convert %.3f, format %.3f%n"
+                             + "  line latency (us): p50 %.1f, p90 %.1f,"
+                             + " p99 %.1f, max %.1f",
+                             getCharacters(), getMessages(),
+                             getSettingsChanges(), getConfigNanos() / 1e6,
+                             getSetUpNanos() / 1e6, getConvertNanos() / 1e6,
+                             getFormatNanos() / 1e6,
+                             getLatencyP50Nanos() / 1e3,
+                             getLatencyP90Nanos() / 1e3,
+                             getLatencyP99Nanos() / 1e3,
+                             getLatencyMaxNanos() / 1e3);
+    }
+
+    /** Name under which I am registered with JMX. */
+    static final String OBJECT_NAME = "enigma:type=Metrics";
+
+    /** Log base 2 of the number of latency buckets per power of two. */
+    private static final int SUB_BITS = 3;
+
+    /** Number of latency buckets per power of two. */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** The metrics for this JVM. */
+    private static final Metrics INSTANCE = new Metrics();
+
+    /** Counts of characters, message lines and settings lines. */
+    private final LongAdder _characters = new LongAdder(),
+        _messages = new LongAdder(), _settingsChanges = new LongAdder();
+
+    /** Time spent on each part of the work. */
+    private final LongAdder _configNanos = new LongAdder(),
+        _setUpNanos = new LongAdder(), _convertNanos = new LongAdder(),
+        _formatNanos = new LongAdder();
+
+    /** Histogram of message line latencies. */
+    private final LongAdder[] _latency;
+
+    /** Longest message line latency. */
+    private final LongAccumulator _maxLatency =
+        new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+}
@@ -0,0 +1,45 @@
+package enigma;
+
+/** The management interface of Metrics, through which JMX clients read
+ *  the counters of a running simulator.  Times are in nanoseconds.
+ *  @author Aarini
+ */
+public interface MetricsMBean {
+
+    /** Return the number of characters converted. */
+    long getCharacters();
+
+    /** Return the number of message lines converted. */
+    long getMessages();
+
+    /** Return the number of settings lines applied. */
+    long getSettingsChanges();
+
+    /** Return the time spent reading configuration files. */
+    long getConfigNanos();
+
+    /** Return the time spent applying settings lines. */
+    long getSetUpNanos();
+
+    /** Return the time spent converting characters. */
+    long getConvertNanos();
+
+    /** Return the time spent formatting output. */
+    long getFormatNanos();
+
+    /** Return the median time to convert and format a message line. */
+    long getLatencyP50Nanos();
+
+    /** Return the 90th percentile of the message line latency. */
+    long getLatencyP90Nanos();
+
+    /** Return the 99th percentile of the message line latency. */
+    long getLatencyP99Nanos();
+
+    /** Return the longest message line latency. */
+    long getLatencyMaxNanos();
+
+    /** Set all counters to 0. */
+    void reset();
+
+}
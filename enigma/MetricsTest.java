@@ -0,0 +1,73 @@
+package enigma;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** JUnit tests for the Metrics class.
+ *  @author Aarini
+ */
+public class MetricsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testCounters() {
+        Metrics metrics = Metrics.get();
+        metrics.reset();
+        metrics.setUp(100);
+        metrics.converted(5, 40);
+        metrics.converted(7, 60);
+        metrics.formatted(30);
+        metrics.messages(3);
+        assertEquals(12, metrics.getCharacters());
+        assertEquals(3, metrics.getMessages());
+        assertEquals(1, metrics.getSettingsChanges());
+        assertEquals(100, metrics.getSetUpNanos());
+        assertEquals(100, metrics.getConvertNanos());
+        assertEquals(30, metrics.getFormatNanos());
+        metrics.reset();
+        assertEquals(0, metrics.getCharacters());
+        assertEquals(0, metrics.getLatencyMaxNanos());
+    }
+
+    @Test
+    public void testPercentiles() {
+        Metrics metrics = Metrics.get();
+        metrics.reset();
+        for (long n = 1; n <= 1000; n += 1) {
+            metrics.message(n * 1000);
+        }
+        assertEquals(1000, metrics.getMessages());
+        assertEquals(1000000, metrics.getLatencyMaxNanos());
+        long[][] expected = {{50, 500000}, {90, 900000}, {99, 990000}};
+        for (long[] e : expected) {
+            long p = metrics.latencyPercentile(e[0] / 100.0);
+            assertTrue("p" + e[0] + " = " + p, p >= e[1]
+                       && p <= e[1] + e[1] / 8);
+        }
+        metrics.reset();
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        Metrics metrics = Metrics.get();
+        metrics.registerMBean();
+        metrics.registerMBean();
+        metrics.reset();
+        metrics.converted(42, 1);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(42L, server.getAttribute(
+                new ObjectName(Metrics.OBJECT_NAME), "Characters"));
+        metrics.reset();
+    }
+
+}
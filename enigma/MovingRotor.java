@@ -9,14 +9,31 @@ class MovingRotor extends Rotor {
     /** List of notches of rotor.*/
     private String _notches;
 
+    /** _notchAt[k] is true iff setting k is one of my notches. */
+    private boolean[] _notchAt;
+
     /** A rotor named NAME whose permutation in its default setting is
      *  PERM, and whose notches are at the positions indicated in NOTCHES.
      *  The Rotor is initally in its 0 setting (first character of its
      *  alphabet).
      */
     MovingRotor(String name, Permutation perm, String notches) {
+        this(name, perm, notches, null);
+        _notchAt = new boolean[perm.size()];
+        for (int i = 0; i < notches.length(); i++) {
+            if (perm.alphabet().contains(notches.charAt(i))) {
+                _notchAt[perm.alphabet().toInt(notches.charAt(i))] = true;
+            }
+        }
+    }
+
+    /** A rotor as for MovingRotor(NAME, PERM, NOTCHES) whose notches are
+     *  given by the table NOTCHAT, which is shared and not modified. */
+    MovingRotor(String name, Permutation perm, String notches,
+                boolean[] notchAt) {
         super(name, perm);
         _notches = notches;
+        _notchAt = notchAt;
     }
 
     @Override
@@ -26,8 +43,12 @@ class MovingRotor extends Rotor {
 
     @Override
     boolean atNotch() {
-        return _notches.indexOf
-                (permutation().alphabet().toChar(setting())) != -1;
+        return notchAt(setting());
+    }
+
+    @Override
+    boolean notchAt(int posn) {
+        return _notchAt[posn];
     }
 
 
@@ -36,5 +57,14 @@ class MovingRotor extends Rotor {
         this.set(this.setting() + 1);
     }
 
+    @Override
+    Rotor copyWiring() {
+        return new MovingRotor(name(), permutation(), _notches, _notchAt);
+    }
+
+    @Override
+    RotorSpec spec() {
+        return new RotorSpec(name(), permutation(), _notches, true, false);
+    }
 
 }
@@ -88,4 +88,16 @@ public class MovingRotorTest {
         checkRotor("Rotor III set", UPPER_STRING, NAVALA_MAP.get("III"));
     }
 
+    @Test
+    public void checkRotorAtNotch() {
+        setRotor("VI", NAVALA, "ZM");
+        assertFalse(rotor.atNotch());
+        rotor.set('M');
+        assertTrue(rotor.atNotch());
+        rotor.advance();
+        assertFalse(rotor.atNotch());
+        rotor.set(25);
+        assertTrue(rotor.atNotch());
+    }
+
 }
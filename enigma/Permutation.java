@@ -1,5 +1,6 @@
 package enigma;
 
+import java.util.ArrayList;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
  *  to the characters of an alphabet.
@@ -17,11 +18,42 @@ class Permutation {
         String temp = cycles.trim();
         temp = temp.replace("(", "");
         temp = temp.replace(" ", "");
-        int n = temp.length() - 1;
         String temp3 = method(temp);
-        _cycles = temp3.split("\\)");
+        _forward = new int[size()];
+        _inverse = new int[size()];
+        for (int i = 0; i < _forward.length; i++) {
+            _forward[i] = i;
+            _inverse[i] = i;
+        }
+        _cycles = new String[0];
+        for (String cycle : temp3.split("\\)")) {
+            addCycle(cycle);
+        }
+    }
 
+    /** Set this Permutation to the one on ALPHABET whose forward and
+     *  inverse tables are FORWARD and INVERSE, which must be inverses of
+     *  each other and are not copied.  Its cycles are those of FORWARD. */
+    Permutation(int[] forward, int[] inverse, Alphabet alphabet) {
+        _alphabet = alphabet;
+        _forward = forward;
+        _inverse = inverse;
+        ArrayList<String> cycles = new ArrayList<>();
+        boolean[] seen = new boolean[forward.length];
+        StringBuilder cycle = new StringBuilder();
+        for (int i = 0; i < forward.length; i++) {
+            cycle.setLength(0);
+            for (int k = i; !seen[k]; k = forward[k]) {
+                seen[k] = true;
+                cycle.append(alphabet.toChar(k));
+            }
+            if (cycle.length() > 0) {
+                cycles.add(cycle.toString());
+            }
+        }
+        _cycles = cycles.toArray(new String[0]);
     }
+
     /** Helper method that returns a substring
      * mof STR with the last ")" removed. */
     public String method(String str) {
@@ -33,7 +65,7 @@ class Permutation {
     }
 
     /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     *  c0c1...cm. */
+     *  c0c1...cm, and record it in the forward and inverse tables. */
     private void addCycle(String cycle) {
         String[] tempCycle = new String[_cycles.length + 1];
         for (int i = 0; i < _cycles.length; i++) {
@@ -41,6 +73,13 @@ class Permutation {
         }
         tempCycle[_cycles.length] = cycle;
         _cycles = tempCycle;
+        for (int j = 0; j < cycle.length(); j++) {
+            int from = _alphabet.toInt(cycle.charAt(j));
+            int to = _alphabet.toInt(
+                    cycle.charAt(mod(j + 1, cycle.length())));
+            _forward[from] = to;
+            _inverse[to] = from;
+        }
     }
 
     /** Return the value of P modulo the size of this permutation. */
@@ -60,35 +99,13 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        char c = _alphabet.toChar(wrap(p));
-        char newChar;
-        for (int i = 0; i < _cycles.length; i++) {
-            for (int j = 0; j < _cycles[i].length(); j++) {
-                if (_cycles[i].charAt(j) == c) {
-                    newChar = _cycles[i].charAt(mod(j + 1,
-                            _cycles[i].length()));
-                    return _alphabet.toInt(newChar);
-                }
-            }
-        }
-        return p;
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        char n = _alphabet.toChar(wrap(c));
-        char newChar;
-        for (int i = 0; i < _cycles.length; i++) {
-            for (int j = 0; j < _cycles[i].length(); j++) {
-                if (_cycles[i].charAt(j) == n) {
-                    newChar = _cycles[i].charAt(mod(j - 1,
-                            _cycles[i].length()));
-                    return _alphabet.toInt(newChar);
-                }
-            }
-        }
-        return c;
+        return _inverse[wrap(c)];
     }
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET. */
@@ -102,6 +119,16 @@ class Permutation {
         return _alphabet.toChar(invert(_alphabet.toInt(c)));
     }
 
+    /** Return a table whose element I is permute(I). */
+    int[] forwardTable() {
+        return _forward.clone();
+    }
+
+    /** Return a table whose element I is invert(I). */
+    int[] inverseTable() {
+        return _inverse.clone();
+    }
+
     /** Return the alphabet used to initialize this Permutation. */
     Alphabet alphabet() {
         return _alphabet;
@@ -135,4 +162,11 @@ class Permutation {
     /** array of cycles. */
     private String[] _cycles;
 
+    /** _forward[i] is the result of applying this permutation to i. */
+    private int[] _forward;
+
+    /** _inverse[i] is the result of applying the inverse of this
+     *  permutation to i. */
+    private int[] _inverse;
+
 }
@@ -51,6 +51,14 @@ public class PermutationTest {
         checkPerm("identity", UPPER_STRING, UPPER_STRING);
     }
 
+    @Test
+    public void checkNavalRotorTables() {
+        for (String name : NAVALA_MAP.keySet()) {
+            perm = new Permutation(NAVALA.get(name), UPPER);
+            checkPerm("rotor " + name, UPPER_STRING, NAVALA_MAP.get(name));
+        }
+    }
+
     @Test
     public void testInvertChar() {
         Permutation p = new Permutation("(PNH) (ABDFIKLZYXW) (JC)",
@@ -43,6 +43,23 @@ class Reflector extends FixedRotor {
         }
     }
 
+    @Override
+    void setRingSetting(int rset) {
+        if (rset != 0) {
+            throw error("reflector has only one ring setting");
+        }
+    }
+
+    @Override
+    Rotor copyWiring() {
+        return new Reflector(name(), permutation());
+    }
+
+    @Override
+    RotorSpec spec() {
+        return new RotorSpec(name(), permutation(), "", false, true);
+    }
+
     /** setting of rotor. */
     private int _setting = 0;
 
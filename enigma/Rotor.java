@@ -83,6 +83,11 @@ class Rotor {
         _ringSetting = _permutation.alphabet().toInt(rset);
     }
 
+    /** Set ringsetting() to RSET, an index into my alphabet.  */
+    void setRingSetting(int rset) {
+        _ringSetting = mod(rset, size());
+    }
+
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
@@ -105,10 +110,36 @@ class Rotor {
         return false;
     }
 
+    /** Returns true iff I would be at a notch in setting POSN. */
+    boolean notchAt(int posn) {
+        return false;
+    }
+
     /** Advance me one position, if possible. By default, does nothing. */
     void advance() {
     }
 
+    /** Return a new rotor with my name, wiring and notches, my current
+     *  setting and my ring setting. */
+    Rotor copy() {
+        Rotor result = copyWiring();
+        result._setting = _setting;
+        result._ringSetting = _ringSetting;
+        return result;
+    }
+
+    /** Return a new rotor with my name, wiring and notches, in its 0
+     *  setting with a 0 ring setting. */
+    Rotor copyWiring() {
+        return new Rotor(_name, _permutation);
+    }
+
+    /** Return the immutable definition of my type, name, wiring and
+     *  notches. */
+    RotorSpec spec() {
+        return new RotorSpec(_name, _permutation, "", false, false);
+    }
+
     /** helper modulo func that Returns the value of P modulo the input SIZE. */
     private int mod(int p, int size) {
         int r = p % size;
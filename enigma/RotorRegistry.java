@@ -0,0 +1,72 @@
+package enigma;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/** The rotors available to a configuration, indexed by name, so that
+ *  finding the rotor for a slot takes constant time however many rotors
+ *  a configuration defines.  Each rotor also has a number, its position
+ *  in the configuration, by which machines record which rotor is in each
+ *  slot.  A registry is immutable and may be shared by any number of
+ *  machines and threads.
+ *  @author Aarini
+ */
+final class RotorRegistry {
+
+    /** A registry of the rotors defined by SPECS, numbered in order.  If
+     *  two share a name, the later one is found by that name. */
+    RotorRegistry(RotorSpec[] specs) {
+        _specs = specs.clone();
+        HashMap<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < _specs.length; i++) {
+            index.put(_specs[i].name(), i);
+        }
+        _index = Map.copyOf(index);
+    }
+
+    /** A registry of the definitions of ROTORS, numbered in order. */
+    RotorRegistry(Collection<Rotor> rotors) {
+        this(specs(rotors));
+    }
+
+    /** Return the definitions of ROTORS. */
+    private static RotorSpec[] specs(Collection<Rotor> rotors) {
+        RotorSpec[] result = new RotorSpec[rotors.size()];
+        int i = 0;
+        for (Rotor rotor : rotors) {
+            result[i] = rotor.spec();
+            i += 1;
+        }
+        return result;
+    }
+
+    /** Return the number of rotors defined. */
+    int size() {
+        return _specs.length;
+    }
+
+    /** Return the definition of rotor number I. */
+    RotorSpec get(int i) {
+        return _specs[i];
+    }
+
+    /** Return the number of the rotor named NAME, or -1 if there is
+     *  none. */
+    int indexOf(String name) {
+        Integer result = _index.get(name);
+        return result == null ? -1 : result;
+    }
+
+    /** Return true iff some rotor is named NAME. */
+    boolean contains(String name) {
+        return _index.containsKey(name);
+    }
+
+    /** The definitions, in order. */
+    private final RotorSpec[] _specs;
+
+    /** The number of the rotor with each name. */
+    private final Map<String, Integer> _index;
+
+}
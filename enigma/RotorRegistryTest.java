@@ -0,0 +1,63 @@
+package enigma;
+
+import java.util.ArrayList;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** JUnit tests for the RotorRegistry class.
+ *  @author Aarini
+ */
+public class RotorRegistryTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The rotors B, BETA and I of rotors(), and then a second rotor
+     *  named I with the wiring and notch of II. */
+    private ArrayList<Rotor> withDuplicate = duplicateI();
+
+    /** Return the rotors held in withDuplicate. */
+    private static ArrayList<Rotor> duplicateI() {
+        ArrayList<Rotor> result = rotors();
+        Rotor second = result.get(3);
+        result.subList(3, result.size()).clear();
+        result.add(new MovingRotor("I", second.permutation(), "E"));
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testLookup() {
+        RotorRegistry registry = new RotorRegistry(withDuplicate);
+        assertEquals(4, registry.size());
+        assertEquals(0, registry.indexOf("B"));
+        assertEquals(1, registry.indexOf("BETA"));
+        assertTrue(registry.contains("BETA"));
+        assertFalse(registry.contains("Beta"));
+        assertEquals(-1, registry.indexOf("GAMMA"));
+        assertEquals("BETA", registry.get(1).name());
+    }
+
+    @Test
+    public void testLaterDuplicateWins() {
+        RotorRegistry registry = new RotorRegistry(withDuplicate);
+        assertEquals(3, registry.indexOf("I"));
+        assertEquals("E", registry.get(registry.indexOf("I")).notches());
+    }
+
+    @Test (expected = EnigmaException.class)
+    public void testMachineRejectsUnknownName() {
+        Machine machine = new Machine(UPPER, 3, 1,
+                                      new RotorRegistry(withDuplicate));
+        machine.insertRotors(new String[] {"B", "BETA", "GAMMA"});
+    }
+
+}
@@ -0,0 +1,92 @@
+package enigma;
+
+/** The immutable definition of a rotor from a configuration: its name,
+ *  wiring, notches and type.  A spec may be shared freely between
+ *  machines and threads; the setting and ring setting of a rotor in a
+ *  slot belong to the Rotor that newRotor() creates for that slot.
+ *  @author Aarini
+ */
+final class RotorSpec {
+
+    /** A spec for a rotor named NAME with wiring PERM and notches at the
+     *  characters of NOTCHES, which rotates iff ROTATES and is a reflector
+     *  iff REFLECTING. */
+    RotorSpec(String name, Permutation perm, String notches,
+              boolean rotates, boolean reflecting) {
+        _name = name;
+        _permutation = perm;
+        _notches = notches;
+        _rotates = rotates;
+        _reflecting = reflecting;
+        _notchAt = new boolean[perm.size()];
+        for (int i = 0; i < notches.length(); i++) {
+            if (perm.alphabet().contains(notches.charAt(i))) {
+                _notchAt[perm.alphabet().toInt(notches.charAt(i))] = true;
+            }
+        }
+    }
+
+    /** Return my name. */
+    String name() {
+        return _name;
+    }
+
+    /** Return my wiring. */
+    Permutation permutation() {
+        return _permutation;
+    }
+
+    /** Return the characters at which I have notches. */
+    String notches() {
+        return _notches;
+    }
+
+    /** Return true iff I have a notch at setting POSN. */
+    boolean notchAt(int posn) {
+        return _notchAt[posn];
+    }
+
+    /** Return true iff I have a ratchet and can move. */
+    boolean rotates() {
+        return _rotates;
+    }
+
+    /** Return true iff I reflect. */
+    boolean reflecting() {
+        return _reflecting;
+    }
+
+    /** Return a new rotor of my type, name, wiring and notches, at its 0
+     *  setting with a 0 ring setting. */
+    Rotor newRotor() {
+        if (_reflecting) {
+            return new Reflector(_name, _permutation);
+        } else if (_rotates) {
+            return new MovingRotor(_name, _permutation, _notches, _notchAt);
+        } else {
+            return new FixedRotor(_name, _permutation);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RotorSpec " + _name;
+    }
+
+    /** My name. */
+    private final String _name;
+
+    /** My wiring at the 0 setting. */
+    private final Permutation _permutation;
+
+    /** Characters at which I have notches. */
+    private final String _notches;
+
+    /** _notchAt[k] is true iff setting K is one of my notches; shared with
+     *  the rotors I create, which never modify it. */
+    private final boolean[] _notchAt;
+
+    /** My type. */
+    private final boolean _rotates, _reflecting;
+
+}
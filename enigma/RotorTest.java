@@ -66,4 +66,18 @@ public class RotorTest {
         int expected = UPPER.toInt("W".charAt(0));
         assertEquals(res, expected);
     }
+
+    @Test
+    public void testCopy() {
+        setRotor("I", NAVALA, "Q");
+        rotor.set(4);
+        rotor.setRingSetting("C");
+        Rotor copy = rotor.copy();
+        assertEquals(4, copy.setting());
+        assertEquals(2, copy.ringSetting());
+        assertTrue(copy.rotates());
+        copy.advance();
+        assertEquals(5, copy.setting());
+        assertEquals(4, rotor.setting());
+    }
 }
@@ -0,0 +1,265 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static enigma.EnigmaException.*;
+
+/** A long-running Enigma service, which keeps parsed configurations (and
+ *  the compiled machines cached with them) resident, so that jobs pay for
+ *  neither JVM startup nor configuration parsing.
+ *
+ *  Clients connect to a local stream socket: a TCP port on the loopback
+ *  interface or a Unix domain socket.  A job is a line naming a
+ *  configuration file (as an absolute path, or relative to the server's
+ *  working directory), followed by messages in the format read by Main,
+ *  ending when the client shuts down its side of the connection.  The
+ *  server streams back the converted messages, exactly as Main would write
+ *  them, followed by a status line: "OK", or "Error: " and a description
+ *  of the error that ended the job.  A configuration is read again if its
+ *  file changes.  Jobs run concurrently on a fixed pool of threads.
+ *  The server's Metrics are available over JMX.  See Client for a
+ *  client.
+ *  @author Aarini
+ */
+public final class Server implements Closeable {
+
+    /** Run a server as specified by ARGS, which are options:
+     *    --port=N       listen on TCP port N of the loopback interface
+     *                   (DEFAULT_PORT by default).
+     *    --socket=PATH  listen on a Unix domain socket created at PATH
+     *                   instead.
+     *    --threads=N    run at most N jobs at once (by default, twice the
+     *                   number of available processors). */
+    public static void main(String... args) {
+        int port = DEFAULT_PORT;
+        String socket = null;
+        int threads = 2 * Runtime.getRuntime().availableProcessors();
+        try {
+            for (String arg : args) {
+                String[] opt = arg.split("=", 2);
+                String value = opt.length > 1 ? opt[1] : "";
+                switch (opt[0]) {
+                case "--port":
+                    port = intOption(arg, value);
+                    break;
+                case "--socket":
+                    socket = value;
+                    break;
+                case "--threads":
+                    threads = Math.max(1, intOption(arg, value));
+                    break;
+                default:
+                    throw error("unknown option: %s", arg);
+                }
+            }
+            ServerSocketChannel channel =
+                socket == null ? tcp(port) : unix(Paths.get(socket));
+            Server server = new Server(channel, threads);
+            Metrics.get().registerMBean();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                } catch (IOException excp) {
+                    /* Exiting anyway. */
+                }
+            }));
+            System.err.printf("Listening on %s%n", channel.getLocalAddress());
+            server.serve();
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        } catch (IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the non-negative integer VALUE of option ARG. */
+    private static int intOption(String arg, String value) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result >= 0) {
+                return result;
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through to the error below. */
+        }
+        throw error("bad value for option %s", arg);
+    }
+
+    /** Return a channel listening on TCP port PORT of the loopback
+     *  interface (any free port if PORT is 0). */
+    static ServerSocketChannel tcp(int port) throws IOException {
+        ServerSocketChannel result = ServerSocketChannel.open();
+        result.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                          port));
+        return result;
+    }
+
+    /** Return a channel listening on a Unix domain socket created at
+     *  PATH, which must not already exist. */
+    static ServerSocketChannel unix(Path path) throws IOException {
+        ServerSocketChannel result =
+            ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        result.bind(UnixDomainSocketAddress.of(path));
+        return result;
+    }
+
+    /** A server accepting jobs on CHANNEL and running at most THREADS of
+     *  them at once. */
+    Server(ServerSocketChannel channel, int threads) {
+        _channel = channel;
+        _pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "enigma-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Accept and run jobs until I am closed. */
+    void serve() throws IOException {
+        try {
+            while (true) {
+                SocketChannel client = _channel.accept();
+                try {
+                    _pool.execute(() -> run(client));
+                } catch (RejectedExecutionException excp) {
+                    client.close();
+                    return;
+                }
+            }
+        } catch (ClosedChannelException excp) {
+            return;
+        }
+    }
+
+    /** Run the job sent by CLIENT, and then close the connection. */
+    private void run(SocketChannel client) {
+        try (client) {
+            BufferedReader input = new BufferedReader(
+                new InputStreamReader(Channels.newInputStream(client)),
+                BUFFER_SIZE);
+            Writer output = new BufferedWriter(
+                new OutputStreamWriter(Channels.newOutputStream(client)),
+                BUFFER_SIZE);
+            String status = OK;
+            try {
+                String configFile = input.readLine();
+                if (configFile == null) {
+                    throw error("no configuration file named");
+                }
+                new Main(configuration(configFile), input, output)
+                    .processJob();
+            } catch (EnigmaException excp) {
+                status = "Error: " + excp.getMessage();
+            } catch (RuntimeException excp) {
+                status = "Error: " + excp;
+            }
+            output.write(status);
+            output.write(System.lineSeparator());
+            output.flush();
+            client.shutdownOutput();
+            char[] rest = new char[BUFFER_SIZE];
+            while (input.read(rest) >= 0) {
+                continue;
+            }
+        } catch (IOException excp) {
+            /* The client has gone; there is no one to tell. */
+            return;
+        }
+    }
+
+    /** Return the configuration read from the file named FILENAME,
+     *  reading it only if it has not been read or has changed since. */
+    Main configuration(String fileName) {
+        Path path = Paths.get(fileName).toAbsolutePath().normalize();
+        long modified;
+        try {
+            modified = Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException excp) {
+            throw error("could not open %s", fileName);
+        }
+        Configuration config = _configs.get(path);
+        if (config == null || config._modified != modified) {
+            config = new Configuration(Main.configuration(path.toString()),
+                                       modified);
+            _configs.put(path, config);
+        }
+        return config._main;
+    }
+
+    /** Stop accepting jobs, leaving those running to finish. */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (_channel.getLocalAddress()
+                    instanceof UnixDomainSocketAddress) {
+                Files.deleteIfExists(((UnixDomainSocketAddress)
+                                      _channel.getLocalAddress()).getPath());
+            }
+        } finally {
+            _channel.close();
+            _pool.shutdown();
+        }
+    }
+
+    /** A configuration read from a file last modified at a given time. */
+    private static final class Configuration {
+
+        /** The configuration MAIN, read from a file last modified at
+         *  MODIFIED. */
+        Configuration(Main main, long modified) {
+            _main = main;
+            _modified = modified;
+        }
+
+        /** The parsed configuration. */
+        private final Main _main;
+
+        /** Modification time of the file it was read from. */
+        private final long _modified;
+    }
+
+    /** Status line ending a successful job. */
+    static final String OK = "OK";
+
+    /** Default TCP port. */
+    static final int DEFAULT_PORT = 7461;
+
+    /** Size of the buffers on each connection. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The channel on which jobs arrive. */
+    private final ServerSocketChannel _channel;
+
+    /** Threads running jobs. */
+    private final ExecutorService _pool;
+
+    /** Configurations read so far, by absolute path. */
+    private final ConcurrentHashMap<Path, Configuration> _configs =
+        new ConcurrentHashMap<>();
+
+}
@@ -0,0 +1,130 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** JUnit tests for the Server and Client classes.
+ *  @author Aarini
+ */
+public class ServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String INPUT =
+        "* B BETA III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+        + "FROM HIS SHOULDER HIAWATHA\n"
+        + "\n"
+        + "TOOK THE CAMERA OF ROSEWOOD\n";
+
+    private static final String NL = System.lineSeparator();
+
+    private static final String OUTPUT =
+        "QVPQS OKOIL PUBKJ ZPISF XDW " + NL
+        + " " + NL
+        + "BHCNS CXNUO AATZX SRCFY DGU " + NL;
+
+    /** Run a job on the server at ADDRESS with configuration file CONFIG
+     *  and input INPUT, returning its output followed by its status. */
+    private static String job(SocketAddress address, Path config,
+                              String input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String status = Client.run(address, config.toString(),
+                new ByteArrayInputStream(input.getBytes()), out);
+        return out.toString() + status;
+    }
+
+    /** Run jobs from many concurrent clients on a server listening on
+     *  CHANNEL, which is closed afterwards. */
+    private void checkConcurrentJobs(ServerSocketChannel channel)
+        throws Exception {
+        Path config = Files.createTempFile("enigma", ".conf");
+        Files.writeString(config, config());
+        SocketAddress address = channel.getLocalAddress();
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try (Server server = new Server(channel, 4)) {
+            start(server);
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i += 1) {
+                results.add(clients.submit(() ->
+                        job(address, config, INPUT)));
+            }
+            for (Future<String> result : results) {
+                assertEquals(OUTPUT + Server.OK, result.get());
+            }
+            assertEquals(OUTPUT + "Error: Duplicate Rotor",
+                    job(address, config,
+                        INPUT + "* B BETA III IV IV AAAA\nHELLO\n"));
+            assertEquals("Error: bad setting format.",
+                    job(address, config, "HELLO\n"));
+        } finally {
+            clients.shutdownNow();
+            Files.delete(config);
+        }
+    }
+
+    /** Start a thread running SERVER's jobs until it is closed. */
+    private static void start(Server server) {
+        new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException excp) {
+                /* Test will fail when its jobs are not run. */
+            }
+        }).start();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testCompiledConfig() throws Exception {
+        Path config = Files.createTempFile("enigma", ".conf");
+        Path compiled = Files.createTempFile("enigma", ".bin");
+        Files.writeString(config, config());
+        Main.main("--compile-config", config.toString(),
+                  compiled.toString());
+        ServerSocketChannel channel = Server.tcp(0);
+        try (Server server = new Server(channel, 2)) {
+            start(server);
+            assertEquals(OUTPUT + Server.OK,
+                    job(channel.getLocalAddress(), compiled, INPUT));
+        } finally {
+            Files.delete(config);
+            Files.delete(compiled);
+        }
+    }
+
+    @Test
+    public void testTcp() throws Exception {
+        checkConcurrentJobs(Server.tcp(0));
+    }
+
+    @Test
+    public void testUnixSocket() throws Exception {
+        Path dir = Files.createTempDirectory("enigma");
+        Path socket = dir.resolve("enigma.sock");
+        checkConcurrentJobs(Server.unix(socket));
+        assertFalse("socket not removed", Files.exists(socket));
+        Files.delete(dir);
+    }
+
+}
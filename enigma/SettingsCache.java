@@ -0,0 +1,104 @@
+package enigma;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A bounded cache of the machine states set up by settings lines, keyed
+ *  by the text of the line, for a single configuration.  Inputs often
+ *  repeat the same settings lines; for those, setting up a machine skips
+ *  splitting the line, checking the rotor names, building the plugboard
+ *  and inserting new rotors, and becomes a lookup followed by
+ *  Machine.restore, which replaces only the rotors that differ.  Only
+ *  lines that were applied without error are cached, so a cached state
+ *  is known to be valid.  States are shared and must not be changed.
+ *
+ *  When full, the cache discards its least recently used entry.  It may
+ *  be shared by machines on different threads.
+ *  @author Aarini
+ */
+final class SettingsCache {
+
+    /** A cache holding at most CAPACITY entries (none if CAPACITY is 0). */
+    SettingsCache(int capacity) {
+        if (capacity < 0) {
+            throw new EnigmaException("negative cache size");
+        }
+        _capacity = capacity;
+        _entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, MachineState> eldest) {
+                if (size() > _capacity) {
+                    _evictions += 1;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Return the state set up by the settings line SETTINGS, or null if
+     *  I do not hold it. */
+    synchronized MachineState get(String settings) {
+        MachineState result = _entries.get(settings);
+        if (result != null) {
+            _hits += 1;
+        } else {
+            _misses += 1;
+        }
+        return result;
+    }
+
+    /** Record that the settings line SETTINGS sets up STATE. */
+    synchronized void put(String settings, MachineState state) {
+        if (_capacity > 0) {
+            _entries.put(settings, state);
+        }
+    }
+
+    /** Return the most entries I hold. */
+    int capacity() {
+        return _capacity;
+    }
+
+    /** Return the number of entries I hold. */
+    synchronized int size() {
+        return _entries.size();
+    }
+
+    /** Return the number of lookups that found an entry. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Return the number of lookups that did not find an entry. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Return the number of entries discarded to make room. */
+    synchronized long evictions() {
+        return _evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = _hits + _misses;
+        return String.format("settings cache: %d/%d entries, %d hits, %d"
+                             + " misses (%.1f%% hit rate), %d evictions",
+                             _entries.size(), _capacity, _hits, _misses,
+                             lookups == 0 ? 0.0 : 100.0 * _hits / lookups,
+                             _evictions);
+    }
+
+    /** Most entries held. */
+    private final int _capacity;
+
+    /** Entries, least recently used first. */
+    private final LinkedHashMap<String, MachineState> _entries;
+
+    /** Counts of lookups that found and did not find an entry, and of
+     *  entries discarded. */
+    private long _hits, _misses, _evictions;
+
+}
@@ -0,0 +1,92 @@
+package enigma;
+
+import java.util.ArrayList;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** JUnit tests for the SettingsCache class.
+ *  @author Aarini
+ */
+public class SettingsCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private ArrayList<Rotor> allRotors = rotors();
+
+    private RotorRegistry registry = new RotorRegistry(allRotors);
+
+    private static final String MSG =
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOODMADEOFSLIDING";
+
+    /** Return the state of a machine with rotors NAMES, settings SETTING,
+     *  ring settings RINGS and plugboard CYCLES. */
+    private MachineState state(String[] names, String setting,
+                               String rings, String cycles) {
+        Machine machine = new Machine(UPPER, 5, 3, registry);
+        machine.insertRotors(names);
+        machine.setRotors(setting);
+        machine.setRingSetting(rings);
+        machine.setPlugboard(new Permutation(cycles, UPPER));
+        return machine.state();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRestoresCachedState() {
+        String[] names = { "B", "BETA", "III", "IV", "I" };
+        SettingsCache cache = new SettingsCache(4);
+        String line = "* B BETA III IV I AXLE BCDE (YF) (ZH)";
+        assertNull(cache.get(line));
+        cache.put(line, state(names, "AXLE", "BCDE", PLUGBOARD));
+
+        Machine fresh = new Machine(UPPER, 5, 3, registry);
+        fresh.restore(state(names, "AXLE", "BCDE", PLUGBOARD));
+        String expected = fresh.convert(MSG);
+        Machine used = new Machine(UPPER, 5, 3, registry);
+        used.restore(state(new String[] { "B", "BETA", "I", "II", "III" },
+                           "ZZZZ", "AAAA", "(AB)"));
+        used.convert(MSG);
+        used.restore(cache.get(line));
+        assertEquals(expected, used.convert(MSG));
+        used.restore(cache.get(line));
+        assertEquals(expected, used.convert(MSG));
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testEviction() {
+        String[] names = { "B", "BETA", "III", "IV", "I" };
+        SettingsCache cache = new SettingsCache(2);
+        cache.put("* 1", state(names, "AAAA", "AAAA", ""));
+        cache.put("* 2", state(names, "BBBB", "AAAA", ""));
+        assertNotNull(cache.get("* 1"));
+        cache.put("* 3", state(names, "CCCC", "AAAA", ""));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+        assertNotNull(cache.get("* 1"));
+        assertNull(cache.get("* 2"));
+        assertNotNull(cache.get("* 3"));
+    }
+
+    @Test
+    public void testZeroCapacity() {
+        String[] names = { "B", "BETA", "III", "IV", "I" };
+        SettingsCache cache = new SettingsCache(0);
+        cache.put("* 1", state(names, "AAAA", "AAAA", ""));
+        assertNull(cache.get("* 1"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.evictions());
+    }
+
+}
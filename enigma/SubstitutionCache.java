@@ -0,0 +1,145 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A bounded cache of compiled machines, keyed by the rotors in each slot
+ *  and the plugboard, for a single configuration.  Many messages are
+ *  often sent with the same rotor order and plugboard and differ only in
+ *  their start positions (and perhaps ring settings); for those, setting
+ *  up a machine becomes a lookup, and all of them share one table of the
+ *  substitutions performed by the slower rotors in each of their
+ *  positions, filled in as positions are reached.  Ring settings are not
+ *  part of the key, since the tables are indexed by rotor offsets.
+ *
+ *  When full, the cache discards its least recently used entry.  It may
+ *  be shared by machines on different threads.
+ *  @author Aarini
+ */
+final class SubstitutionCache {
+
+    /** A cache holding at most CAPACITY entries (none if CAPACITY is 0). */
+    SubstitutionCache(int capacity) {
+        if (capacity < 0) {
+            throw new EnigmaException("negative cache size");
+        }
+        _capacity = capacity;
+        _entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Key, CompiledMachine> eldest) {
+                if (size() > _capacity) {
+                    _evictions += 1;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Return a new compiled machine for the rotors defined by SPECS, whose
+     *  slot rotors are ROTORS, with plugboard PLUGBOARD.  Its positions are
+     *  to be set by the caller. */
+    CompiledMachine engine(RotorSpec[] specs, Rotor[] rotors,
+                           Permutation plugboard) {
+        Key key = new Key(specs, plugboard.forwardTable());
+        CompiledMachine proto;
+        synchronized (this) {
+            proto = _entries.get(key);
+            if (proto != null) {
+                _hits += 1;
+                return proto.copy();
+            }
+            _misses += 1;
+        }
+        proto = new CompiledMachine(rotors, plugboard);
+        proto.shareInnerTables();
+        synchronized (this) {
+            if (_capacity > 0) {
+                _entries.putIfAbsent(key, proto);
+            }
+        }
+        return proto.copy();
+    }
+
+    /** Return the most entries I hold. */
+    int capacity() {
+        return _capacity;
+    }
+
+    /** Return the number of entries I hold. */
+    synchronized int size() {
+        return _entries.size();
+    }
+
+    /** Return the number of lookups that found an entry. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Return the number of lookups that did not find an entry. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Return the number of entries discarded to make room. */
+    synchronized long evictions() {
+        return _evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("cache: %d/%d entries, %d hits, %d misses,"
+                             + " %d evictions", _entries.size(), _capacity,
+                             _hits, _misses, _evictions);
+    }
+
+    /** The rotor definitions in each slot (compared by identity) and the
+     *  plugboard wiring of a machine. */
+    private static final class Key {
+
+        /** The key for rotors SPECS and plugboard wiring PLUGBOARD. */
+        Key(RotorSpec[] specs, int[] plugboard) {
+            _specs = specs.clone();
+            _plugboard = plugboard;
+            _hash = 31 * Arrays.hashCode(_specs) + Arrays.hashCode(plugboard);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return _hash == other._hash
+                && Arrays.equals(_specs, other._specs)
+                && Arrays.equals(_plugboard, other._plugboard);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hash;
+        }
+
+        /** The rotor definitions, by slot. */
+        private final RotorSpec[] _specs;
+
+        /** The plugboard wiring. */
+        private final int[] _plugboard;
+
+        /** My hash code. */
+        private final int _hash;
+    }
+
+    /** Most entries held. */
+    private final int _capacity;
+
+    /** Entries, least recently used first. */
+    private final LinkedHashMap<Key, CompiledMachine> _entries;
+
+    /** Counts of lookups that found and did not find an entry, and of
+     *  entries discarded. */
+    private long _hits, _misses, _evictions;
+
+}
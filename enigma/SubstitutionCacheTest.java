@@ -0,0 +1,116 @@
+package enigma;
+
+import java.util.ArrayList;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** JUnit tests for the SubstitutionCache class.
+ *  @author Aarini
+ */
+public class SubstitutionCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private ArrayList<Rotor> allRotors = rotors();
+
+    private RotorRegistry registry = new RotorRegistry(allRotors);
+
+    private static final String MSG =
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOODMADEOFSLIDING";
+
+    /** Return MSG converted by a machine using CACHE (if not null) with
+     *  rotors NAMES, settings SETTING, ring settings RINGS and plugboard
+     *  CYCLES. */
+    private String convert(SubstitutionCache cache, String[] names,
+                           String setting, String rings, String cycles) {
+        Machine machine = new Machine(UPPER, 5, 3, registry);
+        machine.setCache(cache);
+        machine.insertRotors(names);
+        machine.setRotors(setting);
+        machine.setRingSetting(rings);
+        machine.setPlugboard(new Permutation(cycles, UPPER));
+        return machine.convert(MSG + MSG + MSG + MSG);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testMatchesUncached() {
+        SubstitutionCache cache = new SubstitutionCache(4);
+        String[] names = {"B", "BETA", "III", "IV", "I"};
+        for (String setting : new String[] {"AXLE", "AQEV", "AXLE", "ZZZZ"}) {
+            for (String rings : new String[] {"AAAA", "BCDE"}) {
+                assertEquals("Cached machine differs",
+                        convert(null, names, setting, rings, "(YF) (ZH)"),
+                        convert(cache, names, setting, rings, "(YF) (ZH)"));
+            }
+        }
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.misses());
+        assertEquals(7, cache.hits());
+    }
+
+    @Test
+    public void testEviction() {
+        SubstitutionCache cache = new SubstitutionCache(2);
+        String[] first = {"B", "BETA", "III", "IV", "I"};
+        String[] second = {"B", "BETA", "I", "II", "III"};
+        convert(cache, first, "AAAA", "AAAA", "(YF) (ZH)");
+        convert(cache, second, "AAAA", "AAAA", "(YF) (ZH)");
+        convert(cache, first, "AAAA", "AAAA", "(YF) (ZH)");
+        convert(cache, first, "AAAA", "AAAA", "(YF) (ZA)");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+        convert(cache, first, "AAAA", "AAAA", "(YF) (ZH)");
+        convert(cache, second, "AAAA", "AAAA", "(YF) (ZH)");
+        assertEquals(2, cache.hits());
+        assertEquals(4, cache.misses());
+        assertEquals(2, cache.evictions());
+    }
+
+    @Test
+    public void testZeroCapacity() {
+        SubstitutionCache cache = new SubstitutionCache(0);
+        String[] names = {"B", "BETA", "III", "IV", "I"};
+        convert(cache, names, "AAAA", "AAAA", "");
+        convert(cache, names, "AAAA", "AAAA", "");
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void testInnerTablesBounded() {
+        Machine machine = new Machine(UPPER, 5, 3, registry);
+        machine.insertRotors(new String[] { "B", "BETA", "III", "IV", "I" });
+        CompiledMachine small = new CompiledMachine(machine.rotors(),
+                new Permutation("", UPPER));
+        small.shareInnerTables();
+        assertTrue(small.sharesInnerTables());
+
+        Alphabet wide = new CharacterRange('\u0100', '\u01ff');
+        StringBuilder pairs = new StringBuilder();
+        for (int c = 0; c < wide.size(); c += 2) {
+            pairs.append("(").append(wide.toChar(c))
+                .append(wide.toChar(c + 1)).append(") ");
+        }
+        Permutation identity = new Permutation("", wide);
+        Rotor[] rotors = {
+            new Reflector("R", new Permutation(pairs.toString(), wide)),
+            new MovingRotor("X", identity, ""),
+            new MovingRotor("Y", identity, ""),
+            new MovingRotor("Z", identity, ""),
+        };
+        CompiledMachine large = new CompiledMachine(rotors, identity);
+        large.shareInnerTables();
+        assertFalse(large.sharesInnerTables());
+    }
+
+}
@@ -1,5 +1,6 @@
 package enigma;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
 /** Utility definitions for use in unit tests.
@@ -39,6 +40,60 @@ class TestUtils {
                   + "(PW) (QZ) (SX) (UY)");
     }
 
+    /** Return new copies of the rotors used to build machines in the
+     *  tests: the reflector B, the fixed rotor BETA and the moving rotors
+     *  I to IV with their naval notches, wired as in NAVALA. */
+    static ArrayList<Rotor> rotors() {
+        ArrayList<Rotor> result = new ArrayList<>();
+        result.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      UPPER)));
+        result.add(new FixedRotor("BETA", new Permutation(NAVALA.get("Beta"),
+                                                          UPPER)));
+        for (int i = 0; i < MOVING.length; i++) {
+            result.add(new MovingRotor(MOVING[i],
+                    new Permutation(NAVALA.get(MOVING[i]), UPPER),
+                    NOTCHES[i]));
+        }
+        return result;
+    }
+
+    /** Return the text of a configuration file for a machine with 5 slots
+     *  and 3 pawls whose available rotors are those of rotors(). */
+    static String config() {
+        StringBuilder result = new StringBuilder(UPPER_STRING + "\n 5 3\n");
+        result.append(" B R ").append(NAVALA.get("B")).append("\n");
+        result.append(" BETA N ").append(NAVALA.get("Beta")).append("\n");
+        for (int i = 0; i < MOVING.length; i++) {
+            result.append(" ").append(MOVING[i]).append(" M")
+                .append(NOTCHES[i]).append(" ")
+                .append(NAVALA.get(MOVING[i])).append("\n");
+        }
+        return result.toString();
+    }
+
+    /** Names of the moving rotors of rotors(). */
+    private static final String[] MOVING = { "I", "II", "III", "IV" };
+
+    /** Notches of the rotors named in MOVING. */
+    private static final String[] NOTCHES = { "Q", "E", "V", "J" };
+
+    /** Return new copies of the rotors of rotors() named NAMES, in
+     *  order. */
+    static Rotor[] rotors(String... names) {
+        Rotor[] result = new Rotor[names.length];
+        for (Rotor rotor : rotors()) {
+            for (int i = 0; i < names.length; i++) {
+                if (rotor.name().equals(names[i])) {
+                    result[i] = rotor;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Plugboard cycles used with rotors() in the tests. */
+    static final String PLUGBOARD = "(HQ) (EX) (IP) (TR) (BY)";
+
     /** The mapping of the upper-case alphabet by NAVALA. */
     static final HashMap<String, String> NAVALA_MAP = new HashMap<>();
     static {
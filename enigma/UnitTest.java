@@ -12,7 +12,13 @@ public class UnitTest {
     public static void main(String[] ignored) {
         textui.runClasses(PermutationTest.class, MovingRotorTest.class,
                 ReflectorTest.class, RotorTest.class, CharacterRangeTest.class,
-                MachineTest.class);
+                MachineTest.class, KeySearchTest.class,
+                BombeTest.class, SubstitutionCacheTest.class,
+                ServerTest.class, MetricsTest.class,
+                EventsTest.class, BatchMachineTest.class,
+                RotorRegistryTest.class,
+                SettingsCacheTest.class, CompiledConfigTest.class,
+                MainTest.class);
     }
 
 }
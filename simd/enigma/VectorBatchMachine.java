@@ -0,0 +1,115 @@
+package enigma;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** A BatchMachine that steps and converts a vector of lanes at a time
+ *  with the (incubating) Vector API: rotor stepping is done with masked
+ *  adds, and each table read with a gather.  Requires the
+ *  jdk.incubator.vector module, both to compile and to run.
+ *  BatchMachine.create() uses this class when it can load it.
+ *  @author Aarini
+ */
+final class VectorBatchMachine extends BatchMachine {
+
+    /** A batch of LANES machines whose slots hold ROTORS (ROTORS[0] being
+     *  the reflector) and whose plugboard is PLUGBOARD.  All rotors start
+     *  at setting 0 with ring setting 0. */
+    VectorBatchMachine(Rotor[] rotors, Permutation plugboard, int lanes) {
+        super(rotors, plugboard, lanes, width(lanes));
+        _index = new int[SPECIES.length()];
+        _laneBase = new int[width(lanes)];
+        for (int j = 0; j < _laneBase.length; j++) {
+            _laneBase[j] = j * _size;
+        }
+    }
+
+    /** Return LANES rounded up to a whole number of vectors. */
+    private static int width(int lanes) {
+        return SPECIES.loopBound(lanes + SPECIES.length() - 1);
+    }
+
+    @Override
+    void step() {
+        int last = _numRotors - 1;
+        VectorMask<Integer> all = SPECIES.maskAll(true);
+        for (int j = 0; j < _lanes; j += SPECIES.length()) {
+            VectorMask<Integer> atThis = atNotch(0, j);
+            VectorMask<Integer> moved = SPECIES.maskAll(false);
+            for (int i = 0; i <= last; i++) {
+                VectorMask<Integer> atNext =
+                    i < last ? atNotch(i + 1, j) : SPECIES.maskAll(false);
+                if (_rotates[i]) {
+                    VectorMask<Integer> moves;
+                    if (i == last) {
+                        moves = all;
+                    } else if (i > 0 && _rotates[i - 1]) {
+                        moves = atNext.or(atThis);
+                    } else {
+                        moves = atNext;
+                    }
+                    advance(_pos[i], j, moves);
+                    advance(_offset[i], j, moves);
+                    if (i < last) {
+                        moved = moved.or(moves);
+                    }
+                }
+                atThis = atNext;
+            }
+            VectorMask.fromArray(SPECIES, _stale, j).or(moved)
+                .intoArray(_stale, j);
+        }
+    }
+
+    @Override
+    void convertColumn(int[] text, int start) {
+        int[] offsets = _offset[_numRotors - 1];
+        for (int j = 0; j < _lanes; j += SPECIES.length()) {
+            VectorMask<Integer> inRange = SPECIES.indexInRange(j, _lanes);
+            IntVector c =
+                IntVector.fromArray(SPECIES, text, start + j, inRange);
+            IntVector base = IntVector.fromArray(SPECIES, offsets, j)
+                .mul(_size);
+            c = gather(_in, base.add(c));
+            c = gather(_inner,
+                       IntVector.fromArray(SPECIES, _laneBase, j).add(c));
+            c = gather(_out, base.add(c));
+            c.intoArray(text, start + j, inRange);
+        }
+    }
+
+    /** Return a mask of the lanes from J whose rotor in slot I is at a
+     *  notch. */
+    private VectorMask<Integer> atNotch(int i, int j) {
+        return IntVector.fromArray(SPECIES, _notch[i], 0, _pos[i], j)
+            .compare(VectorOperators.NE, 0);
+    }
+
+    /** Advance by one, modulo the alphabet size, the settings in SETTINGS
+     *  of the lanes from J selected by MOVES. */
+    private void advance(int[] settings, int j, VectorMask<Integer> moves) {
+        IntVector v = IntVector.fromArray(SPECIES, settings, j);
+        IntVector next = v.add(1);
+        next = next.blend(0, next.compare(VectorOperators.EQ, _size));
+        v.blend(next, moves).intoArray(settings, j);
+    }
+
+    /** Return the elements of TABLE at INDICES. */
+    private IntVector gather(int[] table, IntVector indices) {
+        indices.intoArray(_index, 0);
+        return IntVector.fromArray(SPECIES, table, 0, _index, 0);
+    }
+
+    /** The preferred vector shape for ints on this machine. */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+
+    /** Scratch space holding the indices of a gather. */
+    private final int[] _index;
+
+    /** _laneBase[j] is the start of lane J's entries in _inner. */
+    private final int[] _laneBase;
+
+}